@@ -0,0 +1,397 @@
+package com.goodworkalan.comfort.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A nondeterministic finite automaton compiled from one or more arrays of part
+ * matches. The automaton is used to match both the parts of a file path
+ * against the path matches of a glob and the characters of a file name against
+ * the character matches of a file pattern. When compiled from the path matches
+ * of many globs, the automaton matches all of the globs in a single pass over
+ * the parts of the file path.
+ * <p>
+ * There is one state for each match in each array of matches. The automaton
+ * advances all of its possible states at once for each element of the input,
+ * so a match runs in time proportional to the length of the input times the
+ * number of matches, without the backtracking of a recursive descent. Matches
+ * that are equal are evaluated only once for each element of the input, so
+ * that a file pattern like <code>*.java</code> that is shared by many globs is
+ * only tested once against each file name.
+ * <p>
+ * The automaton preserves the matching rules of the original recursive
+ * descent exactly. A match that can match multiple parts will match zero or
+ * more parts, but the final element of the input must be consumed by the final
+ * match. Thus the glob <code>a/**</code> does not match <code>a</code> and the
+ * file pattern <code>he*</code> does not match <code>he</code>. An empty input
+ * is only matched by an array that contains a single match that can match
+ * multiple parts.
+ * <p>
+ * The automaton is immutable and can be shared by multiple threads. The state
+ * sets used while matching are kept in scratch arrays for each thread, so
+ * that matching a file path does not allocate. Matching is reentrant, since
+ * matching the parts of a file path against a glob matches the characters of
+ * a file name against a file pattern with another automaton, so each thread
+ * keeps a stack of scratch arrays.
+ *
+ * @author Alan Gutierrez
+ */
+final class Automaton {
+    /**
+     * The scratch arrays for a single match, grown as needed to fit the
+     * automaton being matched.
+     */
+    private final static class Scratch {
+        /** The current state set. */
+        public boolean[] states = new boolean[0];
+
+        /** The next state set. */
+        public boolean[] next = new boolean[0];
+
+        /** Whether each array of matches matched. */
+        public boolean[] accepted = new boolean[0];
+
+        /** The memoized outcome of each distinct match for an element. */
+        public byte[] memo = new byte[0];
+    }
+
+    /** The stack of scratch arrays for each thread. */
+    private final static ThreadLocal<List<Scratch>> SCRATCH = new ThreadLocal<List<Scratch>>() {
+        protected List<Scratch> initialValue() {
+            return new ArrayList<Scratch>();
+        }
+    };
+
+    /** The depth of the stack of scratch arrays in use by each thread. */
+    private final static ThreadLocal<int[]> DEPTH = new ThreadLocal<int[]>() {
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    /** The distinct matches, each evaluated at most once per element. */
+    private final Part[] predicates;
+
+    /** The index of the distinct match for each state. */
+    private final int[] predicate;
+
+    /** Whether the match at the state index can match multiple parts. */
+    private final boolean[] multiple;
+
+    /** Whether the state is the final match of its array of matches. */
+    private final boolean[] last;
+
+    /** The index of the array of matches for each state. */
+    private final int[] pattern;
+
+    /** The index of the first state of each array of matches. */
+    private final int[] first;
+
+    /**
+     * Create an automaton from the given array of matches.
+     *
+     * @param matches
+     *            The array of matches.
+     */
+    public Automaton(Part[] matches) {
+        this(new Part[][] { matches });
+    }
+
+    /**
+     * Create an automaton from the given arrays of matches.
+     *
+     * @param patterns
+     *            The arrays of matches.
+     */
+    public Automaton(Part[][] patterns) {
+        int count = 0;
+        for (Part[] matches : patterns) {
+            count += matches.length;
+        }
+        Map<Part, Integer> distinct = new HashMap<Part, Integer>();
+        List<Part> predicates = new ArrayList<Part>();
+        this.predicate = new int[count];
+        this.multiple = new boolean[count];
+        this.last = new boolean[count];
+        this.pattern = new int[count];
+        this.first = new int[patterns.length];
+        int state = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            first[i] = state;
+            for (int j = 0; j < patterns[i].length; j++) {
+                Part match = patterns[i][j];
+                Integer index = distinct.get(match);
+                if (index == null) {
+                    index = predicates.size();
+                    distinct.put(match, index);
+                    predicates.add(match);
+                }
+                predicate[state] = index;
+                multiple[state] = match.multiple();
+                last[state] = j + 1 == patterns[i].length;
+                pattern[state] = i;
+                state++;
+            }
+        }
+        this.predicates = predicates.toArray(new Part[predicates.size()]);
+    }
+
+    /**
+     * Get the number of arrays of matches compiled into this automaton.
+     *
+     * @return The number of arrays of matches.
+     */
+    public int size() {
+        return first.length;
+    }
+
+    /**
+     * Take the next scratch arrays from the stack of scratch arrays of the
+     * current thread, growing them to fit this automaton and clearing them.
+     * The scratch arrays must be returned with {@link #release()}.
+     *
+     * @return The scratch arrays.
+     */
+    private Scratch acquire() {
+        List<Scratch> stack = SCRATCH.get();
+        int[] depth = DEPTH.get();
+        if (depth[0] == stack.size()) {
+            stack.add(new Scratch());
+        }
+        Scratch scratch = stack.get(depth[0]++);
+        int count = multiple.length;
+        if (scratch.states.length < count) {
+            scratch.states = new boolean[count];
+            scratch.next = new boolean[count];
+        } else {
+            Arrays.fill(scratch.states, 0, count, false);
+            Arrays.fill(scratch.next, 0, count, false);
+        }
+        if (scratch.accepted.length < first.length) {
+            scratch.accepted = new boolean[first.length];
+        } else {
+            Arrays.fill(scratch.accepted, 0, first.length, false);
+        }
+        if (scratch.memo.length < predicates.length) {
+            scratch.memo = new byte[predicates.length];
+        }
+        return scratch;
+    }
+
+    /**
+     * Return the most recently acquired scratch arrays to the stack of scratch
+     * arrays of the current thread.
+     */
+    private static void release() {
+        DEPTH.get()[0]--;
+    }
+
+    /**
+     * Add the states that can be reached without consuming input from the
+     * states in the given state set. A match that can match multiple parts can
+     * be skipped, matching zero parts, unless it is the final match, since the
+     * final match must consume the final element of the input.
+     *
+     * @param states
+     *            The state set.
+     */
+    private void close(boolean[] states) {
+        for (int i = 0; i < multiple.length; i++) {
+            if (states[i] && multiple[i] && !last[i]) {
+                states[i + 1] = true;
+            }
+        }
+    }
+
+    /**
+     * Advance the automaton over the given array of the given length,
+     * recording which arrays of matches matched in the given accepted array,
+     * and return the set of states that remain after the final element. The
+     * array may be either an array of file path parts or else a String object
+     * representing a part in a file path. The state sets are the given scratch
+     * arrays, which may be longer than the number of states.
+     * 
+     * @param array
+     *            An indexed object.
+     * @param length
+     *            The length of the indexed object.
+     * @param accepted
+     *            An array with one element for each array of matches, set to
+     *            true if the array of matches matches the indexed object.
+     * @param scratch
+     *            The cleared scratch arrays.
+     * @return The set of states awaiting further elements or null if no array
+     *         of matches can match the indexed object or any extension of it.
+     */
+    private boolean[] advance(Object array, int length, boolean[] accepted, Scratch scratch) {
+        boolean[] states = scratch.states;
+        for (int i = 0; i < first.length; i++) {
+            int state = first[i];
+            if (state < multiple.length && pattern[state] == i) {
+                states[state] = true;
+                if (length == 0 && multiple[state] && last[state]) {
+                    accepted[i] = true;
+                }
+            }
+        }
+        close(states);
+        if (length == 0) {
+            return states;
+        }
+        boolean[] next = scratch.next;
+        byte[] memo = scratch.memo;
+        int stop = length - 1;
+        for (int offset = 0; offset < length; offset++) {
+            Arrays.fill(memo, 0, predicates.length, (byte) 0);
+            boolean alive = false;
+            for (int i = 0; i < multiple.length; i++) {
+                if (states[i]) {
+                    boolean matched;
+                    if (multiple[i]) {
+                        next[i] = matched = true;
+                    } else {
+                        int index = predicate[i];
+                        if (memo[index] == 0) {
+                            memo[index] = predicates[index].match(array, offset) ? (byte) 1 : (byte) 2;
+                        }
+                        matched = memo[index] == 1;
+                        if (matched && !last[i]) {
+                            next[i + 1] = true;
+                        }
+                    }
+                    if (matched) {
+                        alive = true;
+                        if (last[i] && offset == stop) {
+                            accepted[pattern[i]] = true;
+                        }
+                    }
+                }
+            }
+            if (!alive) {
+                return null;
+            }
+            close(next);
+            boolean[] swap = states;
+            states = next;
+            next = swap;
+            Arrays.fill(next, 0, multiple.length, false);
+        }
+        return states;
+    }
+
+    /**
+     * Match the given array of the given length against the matches of this
+     * automaton, recording which arrays of matches matched in the given
+     * accepted array. The array may be either an array of file path parts or
+     * else a String object representing a part in a file path.
+     *
+     * @param array
+     *            An indexed object.
+     * @param length
+     *            The length of the indexed object.
+     * @param accepted
+     *            An array with one element for each array of matches, set to
+     *            true if the array of matches matches the indexed object.
+     * @return True if any of the arrays of matches matches the indexed object.
+     */
+    public boolean match(Object array, int length, boolean[] accepted) {
+        Scratch scratch = acquire();
+        try {
+            advance(array, length, accepted, scratch);
+        } finally {
+            release();
+        }
+        for (int i = 0; i < accepted.length; i++) {
+            if (accepted[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determine whether any array of matches could match an extension of the
+     * given array of the given length. When matching file path parts, this
+     * answers whether any descendant of a directory could be matched.
+     * 
+     * @param array
+     *            An indexed object.
+     * @param length
+     *            The length of the indexed object.
+     * @return True if an extension of the indexed object might be matched.
+     */
+    public boolean descendable(Object array, int length) {
+        Scratch scratch = acquire();
+        try {
+            boolean[] states = advance(array, length, scratch.accepted, scratch);
+            if (states != null) {
+                for (int i = 0; i < multiple.length; i++) {
+                    if (states[i]) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Determine whether any array of matches matches every extension of the
+     * given array of the given length. This is true when an array of matches
+     * ends with a match that can match multiple parts and that match is
+     * awaiting further elements. When matching file path parts, this answers
+     * whether every descendant of a directory is matched.
+     * 
+     * @param array
+     *            An indexed object.
+     * @param length
+     *            The length of the indexed object.
+     * @return True if every extension of the indexed object is matched.
+     */
+    public boolean subsumes(Object array, int length) {
+        Scratch scratch = acquire();
+        try {
+            boolean[] states = advance(array, length, scratch.accepted, scratch);
+            if (states != null) {
+                for (int i = 0; i < multiple.length; i++) {
+                    if (states[i] && multiple[i] && last[i]) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Match the given array of the given length against the matches of this
+     * automaton.
+     *
+     * @param array
+     *            An indexed object.
+     * @param length
+     *            The length of the indexed object.
+     * @return True if any of the arrays of matches matches the indexed object.
+     */
+    public boolean match(Object array, int length) {
+        Scratch scratch = acquire();
+        try {
+            advance(array, length, scratch.accepted, scratch);
+            for (int i = 0; i < first.length; i++) {
+                if (scratch.accepted[i]) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            release();
+        }
+    }
+}
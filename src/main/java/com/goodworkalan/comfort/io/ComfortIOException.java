@@ -22,6 +22,18 @@ public class ComfortIOException extends RuntimeException {
     /** Unable to write a file. */
     public static final int WRITE_FAILURE = 103;
     
+    /** Unable to copy some of the files in a directory tree. */
+    public static final int COPY_TREE_FAILURE = 104;
+    
+    /** Unable to create a directory. */
+    public static final int MKDIR_FAILURE = 105;
+    
+    /** A copy of a directory tree was interrupted. */
+    public static final int COPY_TREE_CANCELLED = 106;
+    
+    /** Unable to synchronize some of the files in a directory tree. */
+    public static final int SYNC_FAILURE = 107;
+    
     /** The error code. */
     private final int code;
     
@@ -0,0 +1,25 @@
+package com.goodworkalan.comfort.io;
+
+/**
+ * Receives progress notifications from a directory tree copy. Files are copied
+ * concurrently, so the listener is invoked by multiple threads and
+ * implementations must be thread-safe.
+ *
+ * @author Alan Gutierrez
+ */
+public interface CopyListener {
+    /**
+     * Notify the listener that the file at the given relative path has been
+     * copied. The count includes this file and every file copied before it.
+     *
+     * @param filePath
+     *            The relative path of the copied file.
+     * @param transfer
+     *            The number of bytes copied and the elapsed time.
+     * @param count
+     *            The number of files copied so far.
+     * @param total
+     *            The total number of files to copy.
+     */
+    public void copied(String filePath, Transfer transfer, int count, int total);
+}
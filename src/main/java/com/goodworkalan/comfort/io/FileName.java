@@ -19,6 +19,15 @@ final class FileName extends Part {
         this.fileName = fileName;
     }
 
+    /**
+     * Get the file name to match.
+     * 
+     * @return The file name.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
     /**
      * Match the part at the given offset into the given array of file parts
      * against the literal file name.
@@ -2,13 +2,46 @@ package com.goodworkalan.comfort.io;
 
 /**
  * Match a file part with a wildcard pattern in a file glob.
+ * <p>
+ * A wildcard matches one or more characters at the end of a pattern and zero
+ * or more characters elsewhere. Patterns with a common simple shape, a literal
+ * prefix, a literal suffix, both, or a literal surrounded by wildcards, are
+ * matched with string comparisons. All other patterns are matched by an
+ * automaton over the characters of the file part.
  * 
  * @author Alan Gutierrez
  */
 class FilePattern extends Part {
+    /** A pattern that is matched by the automaton. */
+    private final static int GENERAL = 0;
+
+    /** A literal prefix followed by a single wildcard. */
+    private final static int PREFIX = 1;
+
+    /** A single wildcard followed by a literal suffix. */
+    private final static int SUFFIX = 2;
+
+    /** A literal prefix, a single wildcard and a literal suffix. */
+    private final static int PREFIX_SUFFIX = 3;
+
+    /** A literal surrounded by wildcards. */
+    private final static int CONTAINS = 4;
+
     /** The matches to apply against the chracters in the file part. */
     private final Part[] matches;
 
+    /** The automaton compiled from the character matches. */
+    private final Automaton automaton;
+
+    /** The shape of the pattern. */
+    private final int shape;
+
+    /** The literal prefix, or the literal to contain. */
+    private final String prefix;
+
+    /** The literal suffix. */
+    private final String suffix;
+
     /**
      * Create a file pattern match.
      * 
@@ -32,6 +65,28 @@ class FilePattern extends Part {
             }
         }
         this.matches = matches;
+        this.automaton = new Automaton(matches);
+        int first = pattern.indexOf('*');
+        int last = pattern.lastIndexOf('*');
+        if (pattern.indexOf('?') != -1 || first == -1) {
+            shape = GENERAL;
+            prefix = suffix = null;
+        } else if (first == last) {
+            prefix = pattern.substring(0, first);
+            suffix = pattern.substring(first + 1);
+            if (suffix.length() == 0) {
+                shape = prefix.length() == 0 ? GENERAL : PREFIX;
+            } else {
+                shape = prefix.length() == 0 ? SUFFIX : PREFIX_SUFFIX;
+            }
+        } else if (first == 0 && last == pattern.length() - 1 && pattern.indexOf('*', 1) == last && last > 1) {
+            shape = CONTAINS;
+            prefix = pattern.substring(1, last);
+            suffix = null;
+        } else {
+            shape = GENERAL;
+            prefix = suffix = null;
+        }
     }
 
     /**
@@ -46,7 +101,19 @@ class FilePattern extends Part {
      */
     public boolean match(Object array, int offset) {
         String string = ((String[]) array)[offset];
-        return descend(string, string.length(), 0, matches, 0);
+        switch (shape) {
+        case PREFIX:
+            return string.length() > prefix.length() && string.startsWith(prefix);
+        case SUFFIX:
+            return string.endsWith(suffix);
+        case PREFIX_SUFFIX:
+            return string.length() >= prefix.length() + suffix.length()
+                && string.startsWith(prefix) && string.endsWith(suffix);
+        case CONTAINS:
+            int index = string.indexOf(prefix);
+            return index != -1 && index + prefix.length() < string.length();
+        }
+        return automaton.match(string, string.length());
     }
     
     /**
@@ -1,6 +1,9 @@
 package com.goodworkalan.comfort.io;
 
 import static com.goodworkalan.comfort.io.ComfortIOException.COPY_FAILURE;
+import static com.goodworkalan.comfort.io.ComfortIOException.COPY_TREE_CANCELLED;
+import static com.goodworkalan.comfort.io.ComfortIOException.COPY_TREE_FAILURE;
+import static com.goodworkalan.comfort.io.ComfortIOException.MKDIR_FAILURE;
 import static com.goodworkalan.comfort.io.ComfortIOException.READ_FAILURE;
 import static com.goodworkalan.comfort.io.ComfortIOException.WRITE_FAILURE;
 
@@ -12,11 +15,34 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Utility methods for files and directories.
@@ -24,6 +50,15 @@ import java.util.List;
  * @author Alan Gutierrez
  */
 public class Files {
+    /** The default number of bytes to transfer in a single call. */
+    public final static int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    /** The default size of the byte buffer used to write lines. */
+    public final static int DEFAULT_POUR_BUFFER_SIZE = 1024 * 1024;
+
+    /** The smallest region of a file that is split for parallel processing. */
+    final static long MINIMUM_REGION_SIZE = 1024 * 1024;
+
     /**
      * Copy the given source file to the given destination file.
      * 
@@ -31,16 +66,58 @@ public class Files {
      *            The source file.
      * @param destination
      *            The destination file.
-     * @exception GlobException
+     * @exception ComfortIOException
      *                If an I/O error occurs.
      */
     public final static void copy(File source, File destination) {
+        copy(source, destination, DEFAULT_CHUNK_SIZE, false);
+    }
+
+    /**
+     * Copy the given source file to the given destination file, transferring
+     * at most the given chunk size in bytes with each call to the file
+     * channel, and returning the number of bytes copied and the time it took.
+     * <p>
+     * A single file channel transfer may move fewer bytes than requested, so
+     * the copy loops until the entire file has been transferred. Transfers are
+     * made with <code>FileChannel.transferTo</code>, which the JVM implements
+     * with a zero-copy system call such as <code>sendfile</code> or
+     * <code>copy_file_range</code> where the operating system supports it.
+     * <p>
+     * If sparse is true, the file is copied through a buffer of the chunk
+     * size and any chunk that is entirely zeros is skipped instead of written,
+     * leaving a hole in the destination file on file systems that support
+     * sparse files. The chunk size is then the granularity of the holes, so it
+     * should be a multiple of the file system block size.
+     * 
+     * @param source
+     *            The source file.
+     * @param destination
+     *            The destination file.
+     * @param chunkSize
+     *            The maximum number of bytes to transfer in a single call.
+     * @param sparse
+     *            If true, chunks of zeros are skipped to preserve holes.
+     * @return The number of bytes copied and the elapsed time.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    public final static Transfer copy(File source, File destination, int chunkSize, boolean sparse) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        long start = System.nanoTime();
+        long position;
         try {
             FileChannel srcChannel = new FileInputStream(source).getChannel();
             try {
                 FileChannel dstChannel = new FileOutputStream(destination).getChannel();
                 try {
-                    dstChannel.transferFrom(srcChannel, 0, srcChannel.size());
+                    if (sparse) {
+                        position = sparse(srcChannel, dstChannel, chunkSize);
+                    } else {
+                        position = transfer(srcChannel, dstChannel, chunkSize);
+                    }
                 } finally {
                     dstChannel.close();
                 }
@@ -50,6 +127,250 @@ public class Files {
         } catch (IOException e) {
             throw new ComfortIOException(COPY_FAILURE, e, source, destination);
         }
+        return new Transfer(position, System.nanoTime() - start);
+    }
+
+    /**
+     * Transfer the entire contents of the source channel to the destination
+     * channel in chunks of at most the given chunk size, looping until the end
+     * of the source channel is reached.
+     * 
+     * @param source
+     *            The source channel.
+     * @param destination
+     *            The destination channel.
+     * @param chunkSize
+     *            The maximum number of bytes to transfer in a single call.
+     * @return The number of bytes transferred.
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    private static long transfer(FileChannel source, FileChannel destination, int chunkSize) throws IOException {
+        long position = 0;
+        long size = source.size();
+        while (position < size) {
+            long count = source.transferTo(position, Math.min(chunkSize, size - position), destination);
+            if (count == 0) {
+                size = source.size();
+            }
+            position += count;
+        }
+        return position;
+    }
+
+    /**
+     * Copy the entire contents of the source channel to the destination
+     * channel through a buffer of the given chunk size, skipping any chunk
+     * that is entirely zeros so that the destination is written as a sparse
+     * file.
+     * 
+     * @param source
+     *            The source channel.
+     * @param destination
+     *            The destination channel.
+     * @param chunkSize
+     *            The size of the copy buffer and of the holes.
+     * @return The number of bytes copied.
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    private static long sparse(FileChannel source, FileChannel destination, int chunkSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(chunkSize);
+        long position = 0;
+        long written = 0;
+        for (;;) {
+            buffer.clear();
+            int count = source.read(buffer, position);
+            if (count == -1) {
+                break;
+            }
+            buffer.flip();
+            if (!zeros(buffer)) {
+                while (buffer.hasRemaining()) {
+                    destination.write(buffer, position + buffer.position());
+                }
+                written = position + count;
+            }
+            position += count;
+        }
+        if (written < position) {
+            buffer.clear();
+            buffer.put((byte) 0).flip();
+            destination.write(buffer, position - 1);
+        }
+        return position;
+    }
+
+    /**
+     * Determine whether the remaining bytes in the given buffer are all zero.
+     * 
+     * @param buffer
+     *            The buffer.
+     * @return True if all of the remaining bytes are zero.
+     */
+    private static boolean zeros(ByteBuffer buffer) {
+        int i = buffer.position();
+        int stop = buffer.limit();
+        for (; i + 8 <= stop; i += 8) {
+            if (buffer.getLong(i) != 0) {
+                return false;
+            }
+        }
+        for (; i < stop; i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy the files in the source directory selected by the given find to the
+     * destination directory, copying files concurrently with one thread for
+     * each available processor.
+     * 
+     * @param source
+     *            The source directory.
+     * @param destination
+     *            The destination directory.
+     * @param find
+     *            The find that selects the files to copy.
+     * @return The total number of bytes copied and the elapsed time.
+     * @exception ComfortIOException
+     *                If any of the files or directories cannot be copied.
+     */
+    public final static Transfer copyTree(File source, File destination, Find find) {
+        return copyTree(source, destination, find, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    /**
+     * Copy the files in the source directory selected by the given find to the
+     * destination directory, copying files concurrently on a pool of the given
+     * number of threads and notifying the given listener as each file is
+     * copied.
+     * <p>
+     * The directories in the destination are created before any files are
+     * copied, each directory created once. A directory is created for every
+     * directory selected by the find and for the parent directory of every
+     * file selected by the find. The files are then copied concurrently.
+     * <p>
+     * A failure to copy one file does not stop the copy of the other files.
+     * When all of the files have been attempted, if any directory could not
+     * be created or any file could not be copied, a
+     * <code>ComfortIOException</code> is thrown whose suppressed exceptions
+     * are the exceptions raised by each failure.
+     * <p>
+     * If the calling thread is interrupted while waiting for the copies, the
+     * copies that have not completed are cancelled and a
+     * <code>ComfortIOException</code> is thrown that reports the number of
+     * cancelled copies separately from the number of failed copies, whose
+     * exceptions are its suppressed exceptions.
+     * 
+     * @param source
+     *            The source directory.
+     * @param destination
+     *            The destination directory.
+     * @param find
+     *            The find that selects the files to copy.
+     * @param threads
+     *            The number of copy threads.
+     * @param listener
+     *            The progress listener or null for no progress notification.
+     * @return The total number of bytes copied and the elapsed time.
+     * @exception ComfortIOException
+     *                If any of the files or directories cannot be copied.
+     */
+    public final static Transfer copyTree(final File source, final File destination, Find find, int threads, final CopyListener listener) {
+        long start = System.nanoTime();
+        List<Throwable> failures = new ArrayList<Throwable>();
+        Set<File> directories = new HashSet<File>();
+        List<String> filePaths = new ArrayList<String>();
+        mkdirs(destination, directories, failures);
+        for (String filePath : find.find(source)) {
+            File file = new File(destination, filePath);
+            if (new File(source, filePath).isDirectory()) {
+                mkdirs(file, directories, failures);
+            } else {
+                mkdirs(file.getParentFile(), directories, failures);
+                filePaths.add(filePath);
+            }
+        }
+        final int total = filePaths.size();
+        final AtomicInteger count = new AtomicInteger();
+        long bytes = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Transfer>> futures = new ArrayList<Future<Transfer>>();
+        int waited = 0;
+        try {
+            for (final String filePath : filePaths) {
+                futures.add(executor.submit(new Callable<Transfer>() {
+                    public Transfer call() {
+                        Transfer transfer = copy(new File(source, filePath), new File(destination, filePath), DEFAULT_CHUNK_SIZE, false);
+                        if (listener != null) {
+                            listener.copied(filePath, transfer, count.incrementAndGet(), total);
+                        }
+                        return transfer;
+                    }
+                }));
+            }
+            for (; waited < futures.size(); waited++) {
+                try {
+                    bytes += futures.get(waited).get().getBytes();
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            int cancelled = 0;
+            for (Future<Transfer> future : futures.subList(waited, futures.size())) {
+                if (!future.isDone() || future.isCancelled()) {
+                    cancelled++;
+                } else {
+                    try {
+                        future.get();
+                    } catch (ExecutionException f) {
+                        failures.add(f.getCause());
+                    } catch (InterruptedException f) {
+                        throw new IllegalStateException(f);
+                    }
+                }
+            }
+            Thread.currentThread().interrupt();
+            ComfortIOException cancel = new ComfortIOException(COPY_TREE_CANCELLED, e, cancelled, total, source, destination, failures.size());
+            for (Throwable failure : failures) {
+                cancel.addSuppressed(failure);
+            }
+            throw cancel;
+        } finally {
+            executor.shutdown();
+        }
+        if (!failures.isEmpty()) {
+            ComfortIOException e = new ComfortIOException(COPY_TREE_FAILURE, null, failures.size(), total, source, destination);
+            for (Throwable failure : failures) {
+                e.addSuppressed(failure);
+            }
+            throw e;
+        }
+        return new Transfer(bytes, System.nanoTime() - start);
+    }
+
+    /**
+     * Create the given directory and any missing parent directories unless it
+     * is in the given set of directories already created, recording a failure
+     * to create the directory in the given list of failures.
+     * 
+     * @param directory
+     *            The directory to create.
+     * @param directories
+     *            The set of directories already created.
+     * @param failures
+     *            The list of failures.
+     */
+    private static void mkdirs(File directory, Set<File> directories, List<Throwable> failures) {
+        if (directories.add(directory) && !directory.isDirectory() && !directory.mkdirs()) {
+            failures.add(new ComfortIOException(MKDIR_FAILURE, null, directory));
+        }
     }
 
     /**
@@ -70,6 +391,61 @@ public class Files {
         return file.delete() || ! file.exists();
     }
 
+    /**
+     * Delete a file or recursively delete a directory in parallel on the given
+     * fork/join pool, forking a task for each subdirectory. Symbolic links are
+     * deleted and not followed. Unlike {@link #unlink(File)}, the deletion
+     * does not stop at the first failure, but deletes everything that it can
+     * and returns the paths that could not be deleted. A directory that
+     * cannot be listed is reported if it cannot be removed, and the directory
+     * that contains a path that cannot be deleted is reported as well, since
+     * it is not empty. Each path is reported once.
+     * 
+     * @param file
+     *            The file or directory to delete.
+     * @param pool
+     *            The fork/join pool.
+     * @return The files that could not be deleted, or an empty list if the
+     *         file or directory was successfully deleted.
+     */
+    public final static List<File> unlink(File file, ForkJoinPool pool) {
+        Queue<Path> failures = new ConcurrentLinkedQueue<Path>();
+        Path path = file.toPath();
+        if (java.nio.file.Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            pool.invoke(new UnlinkTask(path, failures));
+        } else {
+            UnlinkTask.delete(path, failures);
+        }
+        List<File> files = new ArrayList<File>();
+        for (Path failure : failures) {
+            files.add(failure.toFile());
+        }
+        return files;
+    }
+
+    /**
+     * Delete a file or recursively delete a directory in the background,
+     * returning as soon as the file or directory has been atomically renamed
+     * to a hidden sibling trash name. The name of the file or directory is
+     * free to be reused as soon as this method returns.
+     * <p>
+     * The trash is deleted by a shared pool of daemon threads as with
+     * {@link #unlink(File, ForkJoinPool)}. A shutdown hook waits up to thirty
+     * seconds for pending deletions when the virtual machine exits normally,
+     * but trash left by a crash, or by a deletion that does not finish in
+     * time, must be removed by the application.
+     * 
+     * @param file
+     *            The file or directory to delete.
+     * @return A future that returns the trash files that could not be deleted,
+     *         or an empty list if the trash was successfully deleted.
+     * @exception ComfortIOException
+     *                If the file or directory cannot be renamed.
+     */
+    public final static Future<List<File>> unlinkLater(File file) {
+        return Trash.delete(file);
+    }
+
     /**
      * Create a file search path from the given set of files.
      * 
@@ -151,6 +527,106 @@ public class Files {
         return lines;
     }
 
+    /**
+     * Create an iterator over the lines of the given file decoded with the
+     * given character set. The file is mapped into memory a window at a time
+     * and decoded lazily, so that memory use does not depend on the size of
+     * the file. The iterator must be closed if it is abandoned before it is
+     * exhausted.
+     * 
+     * @param file
+     *            The file to read.
+     * @param charset
+     *            The character set.
+     * @return An iterator over the lines in the file.
+     * @exception ComfortIOException
+     *                If the file cannot be opened.
+     */
+    public final static LineIterator lines(File file, Charset charset) {
+        return new LineIterator(file, charset, LineIterator.DEFAULT_WINDOW_SIZE, LineIterator.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Process the lines of the given file decoded with the given character set
+     * in parallel on the given fork/join pool, returning the non-null results
+     * of the given line handler.
+     * <p>
+     * The file is split into regions at line feeds, so that no line is split
+     * between regions, and the regions are mapped and decoded concurrently. A
+     * file is only split if the character set encodes a line feed as the
+     * single byte <code>0x0A</code>, as ASCII compatible character sets such
+     * as UTF-8 do. Otherwise, the file is processed as a single region.
+     * <p>
+     * If the results are ordered, they are returned in the order of the lines
+     * in the file. Otherwise, they are returned in the order in which they were
+     * produced, which avoids holding the results of each region until the
+     * regions before it are complete.
+     * 
+     * @param <T>
+     *            The type of result produced for a line.
+     * @param file
+     *            The file to read.
+     * @param charset
+     *            The character set.
+     * @param handler
+     *            The line handler.
+     * @param pool
+     *            The fork/join pool.
+     * @param ordered
+     *            Whether to return the results in file order.
+     * @return A list of the non-null results of the line handler.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    public final static <T> List<T> forEachLine(File file, Charset charset, LineHandler<T> handler, ForkJoinPool pool, boolean ordered) {
+        return forEachLine(file, charset, handler, pool, ordered, MINIMUM_REGION_SIZE);
+    }
+
+    /**
+     * Process the lines of the given file in parallel, splitting regions that
+     * are larger than the given minimum region size.
+     * 
+     * @param <T>
+     *            The type of result produced for a line.
+     * @param file
+     *            The file to read.
+     * @param charset
+     *            The character set.
+     * @param handler
+     *            The line handler.
+     * @param pool
+     *            The fork/join pool.
+     * @param ordered
+     *            Whether to return the results in file order.
+     * @param minimumRegionSize
+     *            The smallest region that is split.
+     * @return A list of the non-null results of the line handler.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    final static <T> List<T> forEachLine(File file, Charset charset, LineHandler<T> handler, ForkJoinPool pool, boolean ordered, long minimumRegionSize) {
+        try {
+            FileChannel channel = new FileInputStream(file).getChannel();
+            try {
+                long size = channel.size();
+                long threshold = Long.MAX_VALUE;
+                if (Arrays.equals("\n".getBytes(charset), new byte[] { '\n' })) {
+                    threshold = Math.max(minimumRegionSize, size / (pool.getParallelism() * 4));
+                }
+                if (ordered) {
+                    return pool.invoke(new LineTask<T>(file, channel, charset, handler, null, threshold, 0, size));
+                }
+                Queue<T> results = new ConcurrentLinkedQueue<T>();
+                pool.invoke(new LineTask<T>(file, channel, charset, handler, results, threshold, 0, size));
+                return new ArrayList<T>(results);
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new ComfortIOException(READ_FAILURE, e, file);
+        }
+    }
+
     /**
      * Write the given list of lines to file using the default system line
      * separator obtained from <code>System.getProperty("line.separator")</code>
@@ -178,6 +654,304 @@ public class Files {
         }
     }
 
+    /**
+     * Write the given list of lines to file encoded with the given character
+     * set, terminating each line with a line feed.
+     * 
+     * @param file
+     *            The file to write to.
+     * @param lines
+     *            The lines to write.
+     * @param charset
+     *            The character set.
+     * @exception ComfortIOException
+     *                To wrap an I/O exception if the file cannot be written.
+     */
+    public final static void pour(File file, Collection<?> lines, Charset charset) {
+        pour(file, lines, charset, DEFAULT_POUR_BUFFER_SIZE, false);
+    }
+
+    /**
+     * Write the given list of lines to file encoded with the given character
+     * set, terminating each line with a line feed. Lines are encoded into a
+     * direct byte buffer of the given size that is written to a file channel
+     * each time it fills. Lines that are character sequences are encoded
+     * without creating a string, other objects are converted with
+     * <code>toString()</code>. If force is true, the file contents are forced
+     * to the storage device once after the last line is written.
+     * 
+     * @param file
+     *            The file to write to.
+     * @param lines
+     *            The lines to write.
+     * @param charset
+     *            The character set.
+     * @param bufferSize
+     *            The size of the byte buffer, at least 16 bytes.
+     * @param force
+     *            Whether to force the file contents to the storage device.
+     * @exception IllegalArgumentException
+     *                If the buffer size is less than 16.
+     * @exception ComfortIOException
+     *                To wrap an I/O exception if the file cannot be written.
+     */
+    public final static void pour(File file, Collection<?> lines, Charset charset, int bufferSize, boolean force) {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException();
+        }
+        CharsetEncoder encoder = charset.newEncoder()
+                                        .onMalformedInput(CodingErrorAction.REPLACE)
+                                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(bufferSize);
+        CharBuffer newline = CharBuffer.wrap("\n");
+        try {
+            FileChannel channel = new FileOutputStream(file).getChannel();
+            try {
+                for (Object line : lines) {
+                    CharSequence sequence = line instanceof CharSequence ? (CharSequence) line : line.toString();
+                    CharBuffer chars = CharBuffer.wrap(sequence);
+                    encode(encoder, chars, bytes, channel, false);
+                    if (chars.hasRemaining()) {
+                        CharBuffer tail = CharBuffer.allocate(chars.remaining() + 1);
+                        tail.put(chars).put('\n').flip();
+                        encode(encoder, tail, bytes, channel, false);
+                    } else {
+                        newline.rewind();
+                        encode(encoder, newline, bytes, channel, false);
+                    }
+                }
+                encode(encoder, CharBuffer.allocate(0), bytes, channel, true);
+                while (encoder.flush(bytes).isOverflow()) {
+                    drain(bytes, channel);
+                }
+                drain(bytes, channel);
+                if (force) {
+                    channel.force(false);
+                }
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new ComfortIOException(WRITE_FAILURE, e, file);
+        }
+    }
+
+    /**
+     * Atomically replace the given file with the given list of lines encoded
+     * with the given character set. The lines are written to a temporary file
+     * in the same directory, which is forced to the storage device if force is
+     * true, and then renamed over the file, so that readers see either the
+     * old contents or the new contents and never a partial file. If force is
+     * true, the directory is also forced after the rename, so that the rename
+     * itself survives a crash.
+     * 
+     * @param file
+     *            The file to write to.
+     * @param lines
+     *            The lines to write.
+     * @param charset
+     *            The character set.
+     * @param force
+     *            Whether to force the file and the rename to the storage
+     *            device.
+     * @exception ComfortIOException
+     *                To wrap an I/O exception if the file cannot be written.
+     */
+    public final static void pourAtomic(File file, Collection<?> lines, Charset charset, boolean force) {
+        File temporary = temporary(file);
+        try {
+            pour(temporary, lines, charset, DEFAULT_POUR_BUFFER_SIZE, force);
+            rename(temporary, file);
+        } finally {
+            temporary.delete();
+        }
+        if (force) {
+            forceDirectory(file.getAbsoluteFile().getParentFile());
+        }
+    }
+
+    /**
+     * Atomically replace the given destination file with a copy of the given
+     * source file. The source is copied to a temporary file in the same
+     * directory as the destination, which is forced to the storage device if
+     * force is true, and then renamed over the destination, so that readers
+     * see either the old contents or the new contents and never a partial
+     * file. If force is true, the directory is also forced after the rename.
+     * 
+     * @param source
+     *            The source file.
+     * @param destination
+     *            The destination file.
+     * @param force
+     *            Whether to force the file and the rename to the storage
+     *            device.
+     * @return The number of bytes copied and the elapsed time.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    public final static Transfer copyAtomic(File source, File destination, boolean force) {
+        File temporary = temporary(destination);
+        Transfer transfer;
+        try {
+            transfer = copy(source, temporary, DEFAULT_CHUNK_SIZE, false);
+            if (force) {
+                force(temporary);
+            }
+            rename(temporary, destination);
+        } finally {
+            temporary.delete();
+        }
+        if (force) {
+            forceDirectory(destination.getAbsoluteFile().getParentFile());
+        }
+        return transfer;
+    }
+
+    /**
+     * Create an empty temporary file in the same directory as the given file,
+     * so that it can be renamed over the given file without crossing a file
+     * system boundary.
+     * 
+     * @param file
+     *            The file to replace.
+     * @return A new temporary file.
+     * @exception ComfortIOException
+     *                If the temporary file cannot be created.
+     */
+    final static File temporary(File file) {
+        File absolute = file.getAbsoluteFile();
+        try {
+            return File.createTempFile("." + absolute.getName() + ".", ".tmp", absolute.getParentFile());
+        } catch (IOException e) {
+            throw new ComfortIOException(WRITE_FAILURE, e, file);
+        }
+    }
+
+    /**
+     * Force the contents of the given file to the storage device.
+     * 
+     * @param file
+     *            The file.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    final static void force(File file) {
+        try {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new ComfortIOException(WRITE_FAILURE, e, file);
+        }
+    }
+
+    /**
+     * Force the entries of the given directory to the storage device, so that
+     * files created or renamed in the directory survive a crash. Some
+     * platforms, notably Windows, cannot open a directory, and on those
+     * platforms the directory is not forced.
+     * 
+     * @param directory
+     *            The directory.
+     * @exception ComfortIOException
+     *                If the directory was opened but could not be forced.
+     */
+    final static void forceDirectory(File directory) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try {
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new ComfortIOException(WRITE_FAILURE, e, directory);
+        }
+    }
+
+    /**
+     * Atomically rename the given file to the given target, replacing the
+     * target if it exists. If the target exists on a file system that
+     * supports POSIX permissions, the file is first given the permissions of
+     * the target, so that a replacement keeps the mode of the file it
+     * replaces.
+     * 
+     * @param file
+     *            The file to rename.
+     * @param target
+     *            The new name of the file.
+     * @exception ComfortIOException
+     *                If the file cannot be renamed atomically.
+     */
+    final static void rename(File file, File target) {
+        try {
+            Set<PosixFilePermission> permissions = null;
+            try {
+                permissions = java.nio.file.Files.getPosixFilePermissions(target.toPath());
+            } catch (NoSuchFileException e) {
+            } catch (UnsupportedOperationException e) {
+            }
+            if (permissions != null) {
+                java.nio.file.Files.setPosixFilePermissions(file.toPath(), permissions);
+            }
+            java.nio.file.Files.move(file.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ComfortIOException(WRITE_FAILURE, e, target);
+        }
+    }
+
+    /**
+     * Encode the given characters into the given byte buffer, writing the
+     * byte buffer to the given channel whenever it fills. Characters that
+     * cannot be encoded until more input arrives, such as the high surrogate
+     * of a pair, are left in the character buffer.
+     * 
+     * @param encoder
+     *            The character set encoder.
+     * @param chars
+     *            The characters to encode.
+     * @param bytes
+     *            The byte buffer.
+     * @param channel
+     *            The file channel.
+     * @param endOfInput
+     *            Whether these are the last characters to encode.
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    private static void encode(CharsetEncoder encoder, CharBuffer chars, ByteBuffer bytes, FileChannel channel, boolean endOfInput) throws IOException {
+        while (encoder.encode(chars, bytes, endOfInput).isOverflow()) {
+            drain(bytes, channel);
+        }
+    }
+
+    /**
+     * Write the contents of the given byte buffer to the given channel and
+     * clear the buffer.
+     * 
+     * @param bytes
+     *            The byte buffer.
+     * @param channel
+     *            The file channel.
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    private static void drain(ByteBuffer bytes, FileChannel channel) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
     /**
      * Create a direct representation of the file without any dotted relative
      * references to parent directories or to the current directory. The
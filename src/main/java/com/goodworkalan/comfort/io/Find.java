@@ -1,10 +1,19 @@
 package com.goodworkalan.comfort.io;
 
 import java.io.File;
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A utility class representing a query against the file system.
@@ -12,8 +21,32 @@ import java.util.Set;
  * @author Alan Gutierrez
  */
 public class Find {
-    /** The list of filters to apply to each file found in a directory tree. */
-    private final Map<String, FindFilter> filters = new HashMap<String, FindFilter>();
+    /**
+     * The number of files tested between reordering the filters by their
+     * observed rejection rates.
+     */
+    final static int REORDER_INTERVAL = 1024;
+
+    /** The include patterns or null if all files are included. */
+    private GlobFindFilter includes;
+
+    /** The exclude patterns or null if no files are excluded. */
+    private GlobFindFilter excludes;
+
+    /** The named filters to apply to each file found in a directory tree. */
+    private final Map<String, FindFilter> filters = new LinkedHashMap<String, FindFilter>();
+
+    /** The filters in order of evaluation or null if they must be ordered. */
+    private volatile RankedFilter[] order;
+
+    /** Whether to reorder the filters by their observed rejection rates. */
+    private boolean adaptive;
+
+    /** The number of files tested when adaptive. */
+    private final AtomicLong tested = new AtomicLong();
+
+    /** The shared cache of directory listings or null to read directories. */
+    private ListingCache cache;
 
     /**
      * Create a new find query.
@@ -21,6 +54,23 @@ public class Find {
     public Find() {
     }
 
+    /**
+     * Create a find query with the conditions and options of the given find,
+     * so that filters can be added to the new find without changing the
+     * given find. The named filters are copied, but the include and exclude
+     * patterns are shared, so patterns must not be added to the new find.
+     * 
+     * @param find
+     *            The find to copy.
+     */
+    Find(Find find) {
+        this.includes = find.includes;
+        this.excludes = find.excludes;
+        this.filters.putAll(find.filters);
+        this.adaptive = find.adaptive;
+        this.cache = find.cache;
+    }
+
     /**
      * Return true if this find has filters. Sometimes an operation may with so
      * specify default filters if not otherwise specified.
@@ -28,7 +78,7 @@ public class Find {
      * @return True if this file search has filters.
      */
     public boolean hasFilters() {
-        return !filters.isEmpty();
+        return includes != null || excludes != null || !filters.isEmpty();
     }
 
     /**
@@ -40,21 +90,19 @@ public class Find {
      *         criteria.
      */
     public Find include(String pattern) {
-        GlobFindFilter globs = (GlobFindFilter) filters.get("include");
-        if (globs == null) {
-            globs = new GlobFindFilter() {
-                public boolean accept(File base, String path) {
-                    for (Glob glob : globs) {
-                        if (glob.match(path)) {
-                            return true;
-                        }
-                    }
-                    return false;
+        if (includes == null) {
+            includes = new GlobFindFilter() {
+                public boolean accept(String[] parts, int length) {
+                    return globs.match(parts, length);
+                }
+
+                public boolean descend(String[] parts, int length) {
+                    return globs.descendable(parts, length);
                 }
             };
-            filters.put("include", globs);
+            order = null;
         }
-        globs.globs.add(new Glob(pattern));
+        includes.globs.add(Glob.compile(pattern));
         return this;
     }
 
@@ -67,21 +115,19 @@ public class Find {
      *         criteria.
      */
     public Find exclude(String pattern) {
-        GlobFindFilter globs = (GlobFindFilter) filters.get("exclude");
-        if (globs == null) {
-            globs = new GlobFindFilter() {
-                public boolean accept(File base, String path) {
-                    for (Glob glob : globs) {
-                        if (glob.match(path)) {
-                            return false;
-                        }
-                    }
-                    return true;
+        if (excludes == null) {
+            excludes = new GlobFindFilter() {
+                public boolean accept(String[] parts, int length) {
+                    return !globs.match(parts, length);
+                }
+
+                public boolean descend(String[] parts, int length) {
+                    return !globs.subsumes(parts, length);
                 }
             };
-            filters.put("exclude", globs);
+            order = null;
         }
-        globs.globs.add(new Glob(pattern));
+        excludes.globs.add(Glob.compile(pattern));
         return this;
     }
 
@@ -96,58 +142,456 @@ public class Find {
      *         criteria.
      */
     public Find filesOnly() {
-        filters.put("file", new FindFilter() {
+        filters.put("file", new FindAttributeFilter() {
             public boolean accept(File base, String filePath) {
                 return new File(base, filePath).isFile();
             }
+
+            public boolean accept(File base, String filePath, BasicFileAttributes attributes) {
+                return attributes.isRegularFile();
+            }
         });
+        order = null;
+        return this;
+    }
+
+    /**
+     * Include only files that are accepted by the given filter, replacing any
+     * filter previously given the same name. A filter that implements
+     * {@link FindAttributeFilter} is given the file attributes read during the
+     * search, so that it can test file type, size or modification time
+     * without querying the file system again. A filter that implements
+     * {@link FindFilterCost} is evaluated in order of its cost and
+     * selectivity relative to the other filters.
+     * 
+     * @param name
+     *            The filter name.
+     * @param filter
+     *            The filter.
+     * @return This <code>Find</code> object in order to continue specifying
+     *         criteria.
+     */
+    public Find filter(String name, FindFilter filter) {
+        filters.put(name, filter);
+        order = null;
+        return this;
+    }
+
+    /**
+     * Learn the order in which to evaluate the filters from the rate at which
+     * each filter rejects files, reordering the filters periodically during
+     * the search. The observed rate of a filter is the rate at which it
+     * rejects the files that the filters before it accepted. Without adaptive
+     * ordering, the filters are ordered by their declared cost and
+     * selectivity.
+     * 
+     * @return This <code>Find</code> object in order to continue specifying
+     *         criteria.
+     */
+    public Find adaptive() {
+        adaptive = true;
+        return this;
+    }
+
+    /**
+     * Get the filters in order of evaluation, ordering them if they have
+     * changed.
+     * 
+     * @return The filters in order of evaluation.
+     */
+    RankedFilter[] order() {
+        RankedFilter[] order = this.order;
+        if (order == null) {
+            List<RankedFilter> ranked = new ArrayList<RankedFilter>();
+            if (includes != null) {
+                ranked.add(new RankedFilter(includes));
+            }
+            if (excludes != null) {
+                ranked.add(new RankedFilter(excludes));
+            }
+            for (FindFilter filter : filters.values()) {
+                ranked.add(new RankedFilter(filter));
+            }
+            order = ranked.toArray(new RankedFilter[ranked.size()]);
+            this.order = order = reorder(order, false);
+        }
+        return order;
+    }
+
+    /**
+     * Sort a copy of the given filters by their rank. The ranks are computed
+     * into a private array and the filters are not modified, so that
+     * concurrent searches can reorder the filters without locking. If two
+     * searches reorder at once, the last order written is used.
+     * 
+     * @param order
+     *            The filters.
+     * @param observed
+     *            Whether to rank the filters by their observed rejection
+     *            rates.
+     * @return The filters in order of evaluation.
+     */
+    private static RankedFilter[] reorder(RankedFilter[] order, boolean observed) {
+        RankedFilter[] sorted = new RankedFilter[order.length];
+        double[] ranks = new double[order.length];
+        for (int i = 0; i < order.length; i++) {
+            double rank = order[i].rank(observed);
+            int j = i;
+            while (j != 0 && ranks[j - 1] > rank) {
+                sorted[j] = sorted[j - 1];
+                ranks[j] = ranks[j - 1];
+                j--;
+            }
+            sorted[j] = order[i];
+            ranks[j] = rank;
+        }
+        return sorted;
+    }
+
+    /**
+     * Read directories through the given shared cache of directory listings
+     * when searching with {@link #find(File)}, so that finds that search the
+     * same directories read each directory only once.
+     * 
+     * @param cache
+     *            The listing cache.
+     * @return This <code>Find</code> object in order to continue specifying
+     *         criteria.
+     */
+    public Find cache(ListingCache cache) {
+        this.cache = cache;
         return this;
     }
 
     /**
-     * Test the find conditions against the files in the given directory.
+     * Determine whether the given directory needs to be searched by asking the
+     * glob filters if any descendant of the directory could be accepted. A
+     * directory that no include pattern could reach, or whose every
+     * descendant is matched by an exclude pattern ending in <code>**</code>,
+     * is skipped.
+     * 
+     * @param base
+     *            The base directory of the find.
+     * @param parts
+     *            An array of file path parts.
+     * @param length
+     *            The number of parts in the directory path.
+     * @return True if the directory needs to be searched.
+     */
+    boolean descend(File base, String[] parts, int length) {
+        for (RankedFilter ranked : order()) {
+            FindFilter filter = ranked.filter;
+            if (filter instanceof GlobFindFilter && !((GlobFindFilter) filter).descend(parts, length)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Test the find conditions against the given relative file path with the
+     * given file attributes. Filters that accept file attributes are given the
+     * attributes so that they do not have to query the file system. Glob
+     * filters are given the parts of the file path from the stack of parts
+     * kept by the walker, so the file path is not split for each filter. The
+     * filters are evaluated cheapest and most selective first, so that a file
+     * is rejected by the cheapest filter that would reject it.
+     * 
+     * @param base
+     *            The base directory of the find.
+     * @param relative
+     *            The relative file path.
+     * @param parts
+     *            An array of file path parts.
+     * @param length
+     *            The number of parts in the file path.
+     * @param attributes
+     *            The basic file attributes of the file.
+     * @return True if the file path matches all of the conditions.
+     */
+    boolean accept(File base, String relative, String[] parts, int length, BasicFileAttributes attributes) {
+        RankedFilter[] order = order();
+        boolean accepted = true;
+        for (int i = 0; accepted && i < order.length; i++) {
+            RankedFilter ranked = order[i];
+            FindFilter filter = ranked.filter;
+            if (filter instanceof GlobFindFilter) {
+                accepted = ((GlobFindFilter) filter).accept(parts, length);
+            } else if (filter instanceof FindAttributeFilter) {
+                accepted = ((FindAttributeFilter) filter).accept(base, relative, attributes);
+            } else {
+                accepted = filter.accept(base, relative);
+            }
+            if (adaptive) {
+                ranked.observe(accepted);
+            }
+        }
+        if (adaptive && tested.incrementAndGet() % REORDER_INTERVAL == 0 && this.order == order) {
+            this.order = reorder(order, true);
+        }
+        return accepted;
+    }
+
+    /**
+     * Read the basic file attributes of the given path, following symbolic
+     * links. If the path is a symbolic link whose target does not exist, the
+     * attributes of the link itself are returned.
+     * 
+     * @param path
+     *            The path.
+     * @return The basic file attributes or null if the file no longer exists.
+     */
+    static BasicFileAttributes attributes(Path path) {
+        try {
+            return java.nio.file.Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            try {
+                return java.nio.file.Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException f) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Recursively search the given directory for the files that match the
+     * conditions of this query.
      * 
-     * @param depth
-     *            The depth of this directory relative to the base directory.
+     * @param directory
+     *            The directory to search.
+     * @return A set of file names that match the conditions of this query.
+     * @exception ComfortIOException
+     *                If a directory cannot be read.
+     */
+    public Set<String> find(File directory) {
+        Set<String> matches = new LinkedHashSet<String>();
+        if (cache != null) {
+            final ListingCache cache = this.cache;
+            find(new Lister() {
+                public Listing list(Path dir, String relative) {
+                    return cache.list(dir);
+                }
+            }, directory, directory.toPath(), "", new String[1], 0, matches);
+            return matches;
+        }
+        FindIterator iterator = iterator(directory);
+        while (iterator.hasNext()) {
+            matches.add(iterator.next());
+        }
+        return matches;
+    }
+
+    /**
+     * Recursively search the given directory for the files that match the
+     * conditions of each of the given queries in a single walk of the
+     * directory tree. Each directory entry is tested against each query that
+     * descended into its directory, and a subdirectory is only skipped if
+     * every query would skip it. The sets are the same sets, in the same
+     * order, as would be returned by calling {@link #find(File)} for each
+     * query. If any of the queries has a listing cache, the directories are
+     * listed using the cache of the first query that has one.
+     * 
+     * @param directory
+     *            The directory to search.
+     * @param finds
+     *            The queries.
+     * @return A list of the sets of file names that match the conditions of
+     *         each query, in the order of the queries.
+     * @exception ComfortIOException
+     *                If a directory cannot be read.
+     */
+    public static List<Set<String>> findAll(File directory, Find... finds) {
+        List<Set<String>> matches = new ArrayList<Set<String>>();
+        for (int i = 0; i < finds.length; i++) {
+            matches.add(new LinkedHashSet<String>());
+        }
+        if (directory.isDirectory() && finds.length != 0) {
+            ListingCache cache = null;
+            for (int i = 0; cache == null && i < finds.length; i++) {
+                cache = finds[i].cache;
+            }
+            final ListingCache lister = cache;
+            boolean[] active = new boolean[finds.length];
+            Arrays.fill(active, true);
+            findAll(new Lister() {
+                public Listing list(Path dir, String relative) {
+                    return lister == null ? Listing.list(dir, 0L) : lister.list(dir);
+                }
+            }, finds, active, directory, directory.toPath(), "", new String[1], 0, matches);
+        }
+        return matches;
+    }
+
+    /**
+     * Search the directory at the given relative path using listings from
+     * the given lister for the files that match the conditions of the active
+     * queries, descending into each subdirectory that any active query would
+     * search.
+     * 
+     * @param lister
+     *            The source of directory listings.
+     * @param finds
+     *            The queries.
+     * @param active
+     *            Whether each query searches this directory.
      * @param base
      *            The base directory of the find.
      * @param dir
-     *            The directory files to test.
+     *            The directory to search.
+     * @param directory
+     *            The relative path of the directory followed by a separator,
+     *            or the empty string for the base directory.
+     * @param parts
+     *            The parts of the directory path with room for one more part.
+     * @param length
+     *            The number of parts in the directory path.
      * @param matches
-     *            The set of files that match the conditions.
+     *            The sets of matching files for each query.
+     * @exception ComfortIOException
+     *                If a directory cannot be read.
      */
-    private void find(int depth, File base, File dir, Set<String> matches) {
-        for (File file : dir.listFiles()) {
-            String relative = Files.relativize(base, file).toString();
-            boolean found = true;
-            for (FindFilter filter : filters.values()) {
-                found = filter.accept(base, relative);
-                if (!found) {
-                    break;
+    private static void findAll(Lister lister, Find[] finds, boolean[] active, File base, Path dir, String directory, String[] parts, int length, List<Set<String>> matches) {
+        Listing listing = lister.list(dir, length == 0 ? "" : directory.substring(0, directory.length() - 1));
+        if (listing == null) {
+            return;
+        }
+        String[] names = listing.getNames();
+        IndexedAttributes[] attributes = listing.getAttributes();
+        for (int i = 0; i < names.length; i++) {
+            String relative = directory + names[i];
+            parts[length] = names[i];
+            for (int j = 0; j < finds.length; j++) {
+                if (active[j] && finds[j].accept(base, relative, parts, length + 1, attributes[i])) {
+                    matches.get(j).add(relative);
+                }
+            }
+            if (attributes[i].isDirectory()) {
+                boolean[] descend = new boolean[finds.length];
+                boolean any = false;
+                for (int j = 0; j < finds.length; j++) {
+                    descend[j] = active[j] && finds[j].descend(base, parts, length + 1);
+                    any |= descend[j];
+                }
+                if (any) {
+                    findAll(lister, finds, descend, base, dir.resolve(names[i]), relative + File.separator, Arrays.copyOf(parts, length + 2), length + 1, matches);
                 }
             }
-            if (found) {
+        }
+    }
+
+    /**
+     * Search the directory at the given relative path using listings from
+     * the given lister instead of reading the file system, adding the
+     * matching files to the given set in the same order as a search by a
+     * single thread, and descending into the subdirectories that could match.
+     * 
+     * @param lister
+     *            The source of directory listings.
+     * @param base
+     *            The base directory of the find.
+     * @param dir
+     *            The directory to search.
+     * @param directory
+     *            The relative path of the directory followed by a separator,
+     *            or the empty string for the base directory.
+     * @param parts
+     *            The parts of the directory path with room for one more part.
+     * @param length
+     *            The number of parts in the directory path.
+     * @param matches
+     *            The set of matching files to add to.
+     */
+    void find(Lister lister, File base, Path dir, String directory, String[] parts, int length, Set<String> matches) {
+        Listing listing = lister.list(dir, length == 0 ? "" : directory.substring(0, directory.length() - 1));
+        if (listing == null) {
+            return;
+        }
+        String[] names = listing.getNames();
+        IndexedAttributes[] attributes = listing.getAttributes();
+        for (int i = 0; i < names.length; i++) {
+            String relative = directory + names[i];
+            parts[length] = names[i];
+            if (accept(base, relative, parts, length + 1, attributes[i])) {
                 matches.add(relative);
             }
-            if (file.isDirectory()) {
-                find(depth + 1, base, file, matches);
+            if (attributes[i].isDirectory() && descend(base, parts, length + 1)) {
+                find(lister, base, dir.resolve(names[i]), relative + File.separator, Arrays.copyOf(parts, length + 2), length + 1, matches);
             }
         }
     }
 
+    /**
+     * Search the directory tree recorded in the given index for the files
+     * that match the conditions of this query, without reading the file
+     * system. The files are returned in the same order as the set returned
+     * by {@link #find(File)} when the index is up to date. Filters that
+     * accept file attributes are given the attributes recorded in the index.
+     * 
+     * @param index
+     *            The index of the directory to search.
+     * @return A set of file names that match the conditions of this query.
+     */
+    public Set<String> find(FindIndex index) {
+        Set<String> matches = new LinkedHashSet<String>();
+        index.find(this, matches);
+        return matches;
+    }
+
+    /**
+     * Create an iterator that lazily searches the given directory for the
+     * files that match the conditions of this query, returning each file as
+     * it is found. The files are returned in the same order as the set
+     * returned by {@link #find(File)}. The iterator must be closed if it is
+     * abandoned before it is exhausted.
+     * 
+     * @param directory
+     *            The directory to search.
+     * @return An iterator over the file names that match the conditions of
+     *         this query.
+     * @exception ComfortIOException
+     *                If the directory cannot be read.
+     */
+    public FindIterator iterator(File directory) {
+        return new FindIterator(this, directory);
+    }
+
     /**
      * Recursively search the given directory for the files that match the
-     * conditions of this query.
+     * conditions of this query, searching sibling directories concurrently
+     * using the given fork/join pool. The files are returned in the same order
+     * as they would be returned by a search performed by a single thread.
      * 
      * @param directory
      *            The directory to search.
+     * @param pool
+     *            The fork/join pool used to search directories concurrently.
      * @return A set of file names that match the conditions of this query.
      */
-    public Set<String> find(File directory) {
+    public Set<String> find(File directory, ForkJoinPool pool) {
         Set<String> matches = new LinkedHashSet<String>();
         if (directory.isDirectory()) {
-            find(1, directory, directory, matches);
+            matches.addAll(pool.invoke(new OrderedFindTask(this, directory, directory.toPath(), "", new String[1], 0)));
         }
         return matches;
     }
+
+    /**
+     * Recursively search the given directory for the files that match the
+     * conditions of this query, searching sibling directories concurrently
+     * using the given fork/join pool and sending each matching file to the
+     * given listener as it is found. The listener is invoked concurrently and
+     * in no particular order. This method returns when the search is complete.
+     * 
+     * @param directory
+     *            The directory to search.
+     * @param pool
+     *            The fork/join pool used to search directories concurrently.
+     * @param listener
+     *            The listener that receives the matching files.
+     */
+    public void find(File directory, ForkJoinPool pool, FindListener listener) {
+        if (directory.isDirectory()) {
+            pool.invoke(new UnorderedFindTask(this, directory, directory.toPath(), "", new String[1], 0, listener));
+        }
+    }
 }
@@ -0,0 +1,27 @@
+package com.goodworkalan.comfort.io;
+
+import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * A find filter that is given the basic file attributes that were read when
+ * the file was found, so that it can test the file type, size or modification
+ * time without querying the file system again.
+ *
+ * @author Alan Gutierrez
+ */
+public interface FindAttributeFilter extends FindFilter {
+    /**
+     * Whether or not the filter matches the given search base directory,
+     * relative file path and file attributes.
+     *
+     * @param base
+     *            The base directory of the search.
+     * @param filePath
+     *            The relative path into directory.
+     * @param attributes
+     *            The basic file attributes of the file.
+     * @return True if the file filter matches the given file.
+     */
+    public boolean accept(File base, String filePath, BasicFileAttributes attributes);
+}
@@ -0,0 +1,35 @@
+package com.goodworkalan.comfort.io;
+
+/**
+ * The relative cost and selectivity of a find filter, implemented by a
+ * {@link FindFilter} so that find can evaluate its filters cheapest and most
+ * selective first. A filter that rejects a file spares the filters after it,
+ * so a cheap filter that rejects many files should be evaluated before an
+ * expensive filter that queries the file system.
+ * <p>
+ * Filters that do not declare a cost are given a default. Glob filters and
+ * filters that implement {@link FindAttributeFilter} have a cost of one,
+ * since the file attributes have already been read. Other filters have a
+ * cost of ten, since they are given only the file path and are likely to
+ * query the file system. Filters that do not declare a selectivity are
+ * assumed to accept half of the files they test.
+ *
+ * @author Alan Gutierrez
+ */
+public interface FindFilterCost {
+    /**
+     * Get the cost of testing a file relative to the cost of matching a file
+     * path against a glob, which is one.
+     *
+     * @return The relative cost of the filter.
+     */
+    public double getCost();
+
+    /**
+     * Get the expected fraction of files accepted by the filter, from zero if
+     * the filter rejects every file to one if it accepts every file.
+     *
+     * @return The expected fraction of files accepted.
+     */
+    public double getSelectivity();
+}
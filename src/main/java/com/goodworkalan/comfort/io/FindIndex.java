@@ -0,0 +1,300 @@
+package com.goodworkalan.comfort.io;
+
+import static com.goodworkalan.comfort.io.ComfortIOException.READ_FAILURE;
+import static com.goodworkalan.comfort.io.ComfortIOException.WRITE_FAILURE;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent index of the directory listings of a directory tree that
+ * answers find queries without walking the file system.
+ * <p>
+ * The index records the entries of each directory with their file type,
+ * size and modification time, along with the modification time of the
+ * directory itself. When the index is refreshed, each directory is checked
+ * with a single read of its attributes and only the directories whose
+ * modification time has changed are listed again. A directory modification
+ * time changes when entries are added, removed or renamed, but not when the
+ * contents of a file change, so the size and modification time recorded for
+ * a file are those read when its directory was last listed.
+ * <p>
+ * The index is saved to a compact binary file that begins with a magic
+ * number, a format version and the path of the indexed directory, and ends
+ * with a CRC-32 checksum. An index file that is missing, truncated, corrupt or
+ * for a different directory is discarded and the tree is listed again. The
+ * file is written to a temporary file and renamed into place, so that
+ * concurrent readers always read a complete index.
+ * <p>
+ * A refresh replaces the directory listings all at once, so an index can be
+ * queried by multiple threads while it is being refreshed.
+ * <p>
+ * The index file must not be inside the indexed directory, since saving the
+ * index would modify the directory that contains it, so that every refresh
+ * would list that directory again and the index would record itself.
+ *
+ * @author Alan Gutierrez
+ */
+public class FindIndex {
+    /** The magic number at the start of an index file. */
+    private final static int MAGIC = 0x46494458;
+
+    /** The version of the index file format. */
+    private final static int VERSION = 1;
+
+    /** The indexed directory. */
+    private final File directory;
+
+    /** The index file. */
+    private final File file;
+
+    /** The directory listings keyed by relative directory path. */
+    private volatile Map<String, Listing> listings = Collections.emptyMap();
+
+    /**
+     * Create an index of the given directory stored in the given index file,
+     * loading the index file if it exists and is valid. The index is not
+     * refreshed.
+     *
+     * @param directory
+     *            The directory to index.
+     * @param file
+     *            The index file.
+     * @exception IllegalArgumentException
+     *                If the index file is inside the indexed directory.
+     * @exception ComfortIOException
+     *                If the index file exists but cannot be read.
+     */
+    public FindIndex(File directory, File file) {
+        try {
+            if (file.getCanonicalFile().toPath().startsWith(directory.getCanonicalFile().toPath())) {
+                throw new IllegalArgumentException();
+            }
+        } catch (IOException e) {
+            throw new ComfortIOException(READ_FAILURE, e, file);
+        }
+        this.directory = directory;
+        this.file = file;
+        load();
+    }
+
+    /**
+     * Get the indexed directory.
+     *
+     * @return The indexed directory.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Get the number of directories in the index.
+     *
+     * @return The number of indexed directories.
+     */
+    public int size() {
+        return listings.size();
+    }
+
+    /**
+     * Load the index file, leaving the index empty if the index file does not
+     * exist or is not valid.
+     *
+     * @exception ComfortIOException
+     *                If the index file exists but cannot be read.
+     */
+    private void load() {
+        byte[] bytes;
+        try {
+            bytes = java.nio.file.Files.readAllBytes(file.toPath());
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            throw new ComfortIOException(READ_FAILURE, e, file);
+        }
+        if (bytes.length < 8) {
+            return;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 8);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        Map<String, Listing> listings = new HashMap<String, Listing>();
+        try {
+            in.skipBytes(bytes.length - 8);
+            if (in.readLong() != crc.getValue()) {
+                return;
+            }
+            in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 8));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(directory.getAbsolutePath())) {
+                return;
+            }
+            for (int i = 0, count = in.readInt(); i < count; i++) {
+                String relative = in.readUTF();
+                long lastModified = in.readLong();
+                long listed = in.readLong();
+                int length = in.readInt();
+                String[] names = new String[length];
+                IndexedAttributes[] attributes = new IndexedAttributes[length];
+                for (int j = 0; j < length; j++) {
+                    names[j] = in.readUTF();
+                    attributes[j] = new IndexedAttributes(in.readByte(), in.readLong(), in.readLong());
+                }
+                listings.put(relative, new Listing(lastModified, listed, names, attributes));
+            }
+        } catch (IOException e) {
+            return;
+        } catch (RuntimeException e) {
+            return;
+        }
+        this.listings = listings;
+    }
+
+    /**
+     * Save the index to the index file, writing a temporary file and renaming
+     * it over the index file.
+     *
+     * @param listings
+     *            The directory listings.
+     * @exception ComfortIOException
+     *                If the index file cannot be written.
+     */
+    private void save(Map<String, Listing> listings) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(directory.getAbsolutePath());
+            out.writeInt(listings.size());
+            for (Map.Entry<String, Listing> entry : listings.entrySet()) {
+                Listing listing = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(listing.getLastModified());
+                out.writeLong(listing.getListed());
+                String[] names = listing.getNames();
+                IndexedAttributes[] attributes = listing.getAttributes();
+                out.writeInt(names.length);
+                for (int i = 0; i < names.length; i++) {
+                    out.writeUTF(names[i]);
+                    out.writeByte(attributes[i].getType());
+                    out.writeLong(attributes[i].size());
+                    out.writeLong(attributes[i].getLastModified());
+                }
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeLong(crc.getValue());
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        File temporary = Files.temporary(file);
+        try {
+            try {
+                FileOutputStream stream = new FileOutputStream(temporary);
+                try {
+                    bytes.writeTo(stream);
+                } finally {
+                    stream.close();
+                }
+            } catch (IOException e) {
+                throw new ComfortIOException(WRITE_FAILURE, e, file);
+            }
+            Files.rename(temporary, file);
+        } finally {
+            temporary.delete();
+        }
+    }
+
+    /**
+     * Bring the index up to date with the file system, listing again each
+     * directory whose modification time has changed, and each directory that
+     * was modified too close to the time it was last listed for a change to
+     * be detected. The index file is saved if any directory was listed.
+     *
+     * @return The number of directories listed.
+     * @exception ComfortIOException
+     *                If a directory cannot be read or the index file cannot
+     *                be written.
+     */
+    public synchronized int refresh() {
+        Map<String, Listing> previous = listings;
+        Map<String, Listing> current = new HashMap<String, Listing>();
+        int listed = refresh(directory.toPath(), "", previous, current);
+        if (listed != 0 || previous.size() != current.size()) {
+            save(current);
+        }
+        listings = current;
+        return listed;
+    }
+
+    /**
+     * Bring the listing of the given directory and the listings of its
+     * subdirectories up to date.
+     *
+     * @param dir
+     *            The directory.
+     * @param relative
+     *            The relative path of the directory.
+     * @param previous
+     *            The previous directory listings.
+     * @param current
+     *            The up to date directory listings.
+     * @return The number of directories listed.
+     */
+    private int refresh(Path dir, String relative, Map<String, Listing> previous, Map<String, Listing> current) {
+        BasicFileAttributes attributes = Find.attributes(dir);
+        if (attributes == null || !attributes.isDirectory()) {
+            return 0;
+        }
+        int listed = 0;
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        Listing listing = previous.get(relative);
+        if (listing == null || !listing.isValid(lastModified, Listing.RESOLUTION)) {
+            listing = Listing.list(dir, lastModified);
+            listed++;
+        }
+        current.put(relative, listing);
+        String[] names = listing.getNames();
+        IndexedAttributes[] entries = listing.getAttributes();
+        String prefix = relative.length() == 0 ? "" : relative + File.separator;
+        for (int i = 0; i < names.length; i++) {
+            if (entries[i].isDirectory()) {
+                listed += refresh(dir.resolve(names[i]), prefix + names[i], previous, current);
+            }
+        }
+        return listed;
+    }
+
+    /**
+     * Find the files in the index that match the conditions of the given
+     * find, in the same order as a search of the file system by a single
+     * thread.
+     *
+     * @param find
+     *            The find conditions.
+     * @param matches
+     *            The set of matching files to add to.
+     */
+    void find(Find find, Set<String> matches) {
+        final Map<String, Listing> listings = this.listings;
+        find.find(new Lister() {
+            public Listing list(Path dir, String relative) {
+                return listings.get(relative);
+            }
+        }, directory, directory.toPath(), "", new String[1], 0, matches);
+    }
+}
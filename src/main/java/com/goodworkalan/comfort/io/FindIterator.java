@@ -0,0 +1,226 @@
+package com.goodworkalan.comfort.io;
+
+import static com.goodworkalan.comfort.io.ComfortIOException.READ_FAILURE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator over the files that match the conditions of a find that searches
+ * the file system lazily, one directory entry at a time. Only the directory
+ * streams of the directories on the path from the base directory to the
+ * current directory are open at any time, so memory use is bounded by the
+ * depth of the directory tree, not by the number of files found. The basic
+ * file attributes of each entry are read once and shared by the filters and
+ * the decision to descend into the entry. The iterator keeps a stack of the
+ * parts of the current file path and a buffer of the relative path, so that
+ * the glob filters are given the path parts without splitting the path.
+ * <p>
+ * The files are returned in the same order as the set returned by
+ * {@link Find#find(File)}. The iterator closes its directory streams when it
+ * is exhausted. An iterator that is abandoned before it is exhausted must be
+ * closed to release its directory streams.
+ *
+ * @author Alan Gutierrez
+ */
+public class FindIterator implements Iterator<String>, Closeable {
+    /** The find conditions. */
+    private final Find find;
+
+    /** The base directory of the find. */
+    private final File base;
+
+    /** The open directory streams from the base to the current directory. */
+    private final LinkedList<DirectoryStream<Path>> streams = new LinkedList<DirectoryStream<Path>>();
+
+    /** The iterators of the open directory streams. */
+    private final LinkedList<Iterator<Path>> iterators = new LinkedList<Iterator<Path>>();
+
+    /** The stack of the parts of the current file path. */
+    private String[] parts = new String[16];
+
+    /** The length of the relative path of each open directory. */
+    private int[] marks = new int[16];
+
+    /** The relative path of the current file. */
+    private final StringBuilder path = new StringBuilder();
+
+    /** The next matching file or null if it has yet to be found. */
+    private String next;
+
+    /**
+     * Create an iterator over the files in the given directory that match the
+     * conditions of the given find.
+     *
+     * @param find
+     *            The find conditions.
+     * @param directory
+     *            The directory to search.
+     * @exception ComfortIOException
+     *                If the directory cannot be read.
+     */
+    FindIterator(Find find, File directory) {
+        this.find = find;
+        this.base = directory;
+        if (directory.isDirectory()) {
+            open(directory.toPath());
+        }
+    }
+
+    /**
+     * Open a directory stream for the given directory and push it onto the
+     * stack of open directories. The relative path of the directory, followed
+     * by a separator, is the current contents of the path buffer.
+     *
+     * @param directory
+     *            The directory.
+     * @exception ComfortIOException
+     *                If the directory cannot be read.
+     */
+    private void open(Path directory) {
+        DirectoryStream<Path> stream;
+        try {
+            stream = java.nio.file.Files.newDirectoryStream(directory);
+        } catch (IOException e) {
+            close();
+            throw new ComfortIOException(READ_FAILURE, e, directory);
+        }
+        int depth = streams.size();
+        if (depth == parts.length) {
+            parts = Arrays.copyOf(parts, depth * 2);
+            marks = Arrays.copyOf(marks, depth * 2);
+        }
+        marks[depth] = path.length();
+        streams.addFirst(stream);
+        iterators.addFirst(stream.iterator());
+    }
+
+    /**
+     * Close the directory stream on the top of the stack of open directories.
+     */
+    private void pop() {
+        iterators.removeFirst();
+        close(streams.removeFirst());
+    }
+
+    /**
+     * Close the given directory stream. Closing a directory stream only
+     * releases the directory handle, so an I/O exception is ignored.
+     *
+     * @param stream
+     *            The directory stream.
+     */
+    private static void close(DirectoryStream<Path> stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+        }
+    }
+
+    /**
+     * Get the directory of the directory stream on the top of the stack of
+     * open directories.
+     *
+     * @return The current directory.
+     */
+    private Path directory() {
+        int mark = marks[streams.size() - 1];
+        if (mark == 0) {
+            return base.toPath();
+        }
+        return base.toPath().resolve(path.substring(0, mark - 1));
+    }
+
+    /**
+     * Return true if there is another file that matches the conditions of the
+     * find, searching the file system until a matching file is found or the
+     * search is exhausted.
+     *
+     * @return True if there is another matching file.
+     * @exception ComfortIOException
+     *                If a directory cannot be read.
+     */
+    public boolean hasNext() {
+        while (next == null && !iterators.isEmpty()) {
+            Iterator<Path> iterator = iterators.getFirst();
+            Path entry;
+            try {
+                if (!iterator.hasNext()) {
+                    pop();
+                    continue;
+                }
+                entry = iterator.next();
+            } catch (DirectoryIteratorException e) {
+                Path directory = directory();
+                close();
+                throw new ComfortIOException(READ_FAILURE, e.getCause(), directory);
+            }
+            BasicFileAttributes attributes = Find.attributes(entry);
+            if (attributes == null) {
+                continue;
+            }
+            int depth = streams.size();
+            String name = entry.getFileName().toString();
+            parts[depth - 1] = name;
+            path.setLength(marks[depth - 1]);
+            path.append(name);
+            String relative = path.toString();
+            if (find.accept(base, relative, parts, depth, attributes)) {
+                next = relative;
+            }
+            if (attributes.isDirectory() && find.descend(base, parts, depth)) {
+                path.append(File.separatorChar);
+                open(entry);
+            }
+        }
+        return next != null;
+    }
+
+    /**
+     * Return the next file that matches the conditions of the find.
+     *
+     * @return The relative path of the next matching file.
+     * @exception NoSuchElementException
+     *                If the search is exhausted.
+     * @exception ComfortIOException
+     *                If a directory cannot be read.
+     */
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String found = next;
+        next = null;
+        return found;
+    }
+
+    /**
+     * Files cannot be removed through a find iterator.
+     *
+     * @exception UnsupportedOperationException
+     *                Always.
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Close all of the open directory streams, ending the search. Closing an
+     * iterator that is exhausted or already closed has no effect.
+     */
+    public void close() {
+        while (!streams.isEmpty()) {
+            close(streams.removeFirst());
+        }
+        iterators.clear();
+    }
+}
@@ -0,0 +1,24 @@
+package com.goodworkalan.comfort.io;
+
+import java.io.File;
+
+/**
+ * Receives the files that match the conditions of a find as they are found.
+ * When the find is performed in parallel, the listener is invoked concurrently
+ * by multiple threads and in no particular order, so implementations must be
+ * thread-safe.
+ *
+ * @author Alan Gutierrez
+ */
+public interface FindListener {
+    /**
+     * Notify the listener that the given relative file path in the given search
+     * base directory matches the conditions of the find.
+     *
+     * @param base
+     *            The base directory of the search.
+     * @param filePath
+     *            The relative path into directory.
+     */
+    public void found(File base, String filePath);
+}
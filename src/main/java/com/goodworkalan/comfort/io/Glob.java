@@ -10,9 +10,18 @@ import java.util.StringTokenizer;
  * @author Alan Gutierrez
  */
 public class Glob {
+    /** The default capacity of the shared glob cache. */
+    public final static int DEFAULT_CACHE_CAPACITY = 1024;
+
+    /** The shared cache of compiled globs. */
+    private final static GlobCache CACHE = new GlobCache(DEFAULT_CACHE_CAPACITY);
+
     /** The array of part matches. */
     private final Part[] matches;
 
+    /** The automaton compiled from the array of part matches. */
+    private final Automaton automaton;
+
     /**
      * Create a glob from the given glob pattern.
      * 
@@ -35,8 +44,31 @@ public class Glob {
             }
         }
         this.matches = matches;
+        this.automaton = new Automaton(matches);
     }
     
+    /**
+     * Get a compiled glob for the given pattern from a shared cache of the
+     * most recently used globs, compiling the glob only if it is not cached.
+     * 
+     * @param pattern
+     *            The glob pattern.
+     * @return The compiled glob.
+     */
+    public static Glob compile(String pattern) {
+        return CACHE.compile(pattern);
+    }
+
+    /**
+     * Get the shared cache used by {@link #compile(String)}, in order to read
+     * its hit and miss statistics.
+     * 
+     * @return The shared glob cache.
+     */
+    public static GlobCache getCache() {
+        return CACHE;
+    }
+
     /**
      * Match against the given file.
      * 
@@ -56,13 +88,63 @@ public class Glob {
      * @return True if this glob matches the given file name.
      */
     public boolean match(String fileName) {
+        String[] parts = split(fileName);
+        return automaton.match(parts, parts.length);
+    }
+
+    /**
+     * Determine whether any descendant of the given directory could be matched
+     * by this glob. A directory whose descendants cannot be matched need not
+     * be searched.
+     * 
+     * @param directory
+     *            The directory path.
+     * @return True if a descendant of the directory might match this glob.
+     */
+    public boolean descendable(String directory) {
+        String[] parts = split(directory);
+        return automaton.descendable(parts, parts.length);
+    }
+
+    /**
+     * Determine whether every descendant of the given directory is matched by
+     * this glob, as is the case for a glob that ends with <code>**</code>
+     * whose leading parts match the directory.
+     * 
+     * @param directory
+     *            The directory path.
+     * @return True if every descendant of the directory matches this glob.
+     */
+    public boolean subsumes(String directory) {
+        String[] parts = split(directory);
+        return automaton.subsumes(parts, parts.length);
+    }
+
+    /**
+     * Get the array of part matches.
+     * 
+     * @return The array of part matches.
+     */
+    Part[] getMatches() {
+        return matches;
+    }
+
+    /**
+     * Split the given file name into an array of file path parts using the
+     * system file separator.
+     * 
+     * @param fileName
+     *            The file path to split.
+     * @return An array of file path parts.
+     */
+    static String[] split(String fileName) {
         StringTokenizer tokens = new StringTokenizer(fileName, File.separator);
         String[] parts = new String[tokens.countTokens()];
         int index = 0;
         while (tokens.hasMoreElements()) {
             parts[index++] = tokens.nextToken();
         }
-        return Part.descend(parts, parts.length, 0, matches, 0);
+        return parts;
     }
 
     /**
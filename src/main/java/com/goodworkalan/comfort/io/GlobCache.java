@@ -0,0 +1,115 @@
+package com.goodworkalan.comfort.io;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of compiled globs keyed by their pattern strings that
+ * evicts the least recently used glob when it is full. Globs are immutable, so
+ * a cached glob can be shared by any number of threads. The cache counts hits
+ * and misses so that its capacity can be sized.
+ *
+ * @author Alan Gutierrez
+ */
+public class GlobCache {
+    /** The maximum number of globs to cache. */
+    private final int capacity;
+
+    /** The globs in least recently used order. */
+    private final Map<String, Glob> globs;
+
+    /** The number of patterns found in the cache. */
+    private long hits;
+
+    /** The number of patterns compiled because they were not in the cache. */
+    private long misses;
+
+    /**
+     * Create a glob cache that holds at most the given number of globs.
+     *
+     * @param capacity
+     *            The maximum number of globs to cache.
+     * @exception IllegalArgumentException
+     *                If the capacity is less than one.
+     */
+    public GlobCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+        this.globs = new LinkedHashMap<String, Glob>(16, 0.75f, true) {
+            /** The serial version id. */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Glob> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the glob for the given pattern from the cache, compiling it and
+     * adding it to the cache if it is not cached.
+     *
+     * @param pattern
+     *            The glob pattern.
+     * @return The compiled glob.
+     */
+    public synchronized Glob compile(String pattern) {
+        Glob glob = globs.get(pattern);
+        if (glob == null) {
+            misses++;
+            glob = new Glob(pattern);
+            globs.put(pattern, glob);
+        } else {
+            hits++;
+        }
+        return glob;
+    }
+
+    /**
+     * Get the maximum number of globs to cache.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of globs currently cached.
+     *
+     * @return The number of cached globs.
+     */
+    public synchronized int size() {
+        return globs.size();
+    }
+
+    /**
+     * Get the number of patterns found in the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of patterns compiled because they were not in the
+     * cache.
+     *
+     * @return The number of cache misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Remove every glob from the cache and reset the statistics.
+     */
+    public synchronized void clear() {
+        globs.clear();
+        hits = misses = 0;
+    }
+}
@@ -1,15 +1,72 @@
 package com.goodworkalan.comfort.io;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
 
 /**
- * A find filter that has a public list of globs. Used by find to
- * build a list of globs to include or exclude.
+ * A find filter that has a public set of globs. Used by find to
+ * build a set of globs to include or exclude.
  * 
  * @author Alan Gutierrez
  */
 abstract class GlobFindFilter implements FindFilter {
-    /** The list of globs. */
-    public final List<Glob> globs = new ArrayList<Glob>();
+    /** The set of globs. */
+    public final GlobSet globs = new GlobSet();
+
+    /**
+     * Whether or not the filter matches the given search base directory and
+     * relative file path. The file path is split into parts and tested with
+     * {@link #accept(String[], int)}.
+     * 
+     * @param base
+     *            The base directory of the search.
+     * @param filePath
+     *            The relative path into directory.
+     * @return True if the file filter matches the given file path.
+     */
+    public boolean accept(File base, String filePath) {
+        String[] parts = Glob.split(filePath);
+        return accept(parts, parts.length);
+    }
+
+    /**
+     * Whether or not the filter matches the relative file path given as the
+     * given array of file path parts of the given length. The find walker
+     * keeps a stack of the parts of the current path, so the path does not
+     * need to be split for each file.
+     * 
+     * @param parts
+     *            An array of file path parts.
+     * @param length
+     *            The number of parts in the file path.
+     * @return True if the file filter matches the given file path.
+     */
+    public abstract boolean accept(String[] parts, int length);
+
+    /**
+     * Whether or not any descendant of the given directory could be accepted
+     * by this filter. Find will not search directories whose descendants
+     * cannot be accepted.
+     * 
+     * @param base
+     *            The base directory of the search.
+     * @param directory
+     *            The relative path of a directory in the search.
+     * @return True if a descendant of the directory might be accepted.
+     */
+    public boolean descend(File base, String directory) {
+        String[] parts = Glob.split(directory);
+        return descend(parts, parts.length);
+    }
+
+    /**
+     * Whether or not any descendant of the directory given as the given array
+     * of file path parts of the given length could be accepted by this filter.
+     * 
+     * @param parts
+     *            An array of file path parts.
+     * @param length
+     *            The number of parts in the directory path.
+     * @return True if a descendant of the directory might be accepted.
+     */
+    public abstract boolean descend(String[] parts, int length);
 }
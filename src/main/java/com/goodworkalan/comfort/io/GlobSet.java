@@ -0,0 +1,242 @@
+package com.goodworkalan.comfort.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A set of globs that are matched against a file path together. The globs are
+ * compiled into a single automaton so that the file path is split into parts
+ * once and each part is tested once against each distinct match, no matter how
+ * many globs are in the set. Literal globs, globs made up entirely of file
+ * names, are gathered into a trie of file path parts instead, so that a large
+ * set of literal file paths is matched in time proportional to the depth of
+ * the file path.
+ * <p>
+ * Globs are indexed in the order in which they were added to the set. A glob
+ * set can be shared by multiple threads once all of the globs have been
+ * added.
+ *
+ * @author Alan Gutierrez
+ */
+public class GlobSet {
+    /** The globs in the order in which they were added. */
+    private final List<Glob> globs = new ArrayList<Glob>();
+
+    /** The trie of the literal globs. */
+    private SegmentTrie trie;
+
+    /** The indexes of the globs compiled into the automaton. */
+    private int[] patterns;
+
+    /**
+     * The automaton compiled from the globs that are not literal or null if
+     * not yet compiled. The trie and the pattern indexes are assigned before
+     * the automaton, so they are visible once the automaton is visible.
+     */
+    private volatile Automaton automaton;
+
+    /**
+     * Create an empty glob set.
+     */
+    public GlobSet() {
+    }
+
+    /**
+     * Add the given glob to the set.
+     *
+     * @param glob
+     *            The glob.
+     * @return This glob set in order to continue adding globs.
+     */
+    public GlobSet add(Glob glob) {
+        globs.add(glob);
+        automaton = null;
+        return this;
+    }
+
+    /**
+     * Add a glob created from the given glob pattern to the set.
+     *
+     * @param pattern
+     *            The glob pattern.
+     * @return This glob set in order to continue adding globs.
+     */
+    public GlobSet add(String pattern) {
+        return add(Glob.compile(pattern));
+    }
+
+    /**
+     * Get the glob at the given index.
+     *
+     * @param index
+     *            The index of the glob in the order added.
+     * @return The glob at the index.
+     */
+    public Glob get(int index) {
+        return globs.get(index);
+    }
+
+    /**
+     * Get the number of globs in the set.
+     *
+     * @return The number of globs.
+     */
+    public int size() {
+        return globs.size();
+    }
+
+    /**
+     * Get the automaton compiled from the globs in the set that are not
+     * literal, compiling it and the trie of literal globs if globs have been
+     * added since it was last compiled.
+     *
+     * @return The compiled automaton.
+     */
+    private Automaton getAutomaton() {
+        Automaton automaton = this.automaton;
+        if (automaton == null) {
+            SegmentTrie trie = new SegmentTrie();
+            List<Part[]> matches = new ArrayList<Part[]>();
+            int[] patterns = new int[globs.size()];
+            for (int i = 0, stop = globs.size(); i < stop; i++) {
+                Part[] glob = globs.get(i).getMatches();
+                if (SegmentTrie.literal(glob)) {
+                    trie.add(glob, i);
+                } else {
+                    patterns[matches.size()] = i;
+                    matches.add(glob);
+                }
+            }
+            this.trie = trie;
+            this.patterns = patterns;
+            this.automaton = automaton = new Automaton(matches.toArray(new Part[matches.size()][]));
+        }
+        return automaton;
+    }
+
+    /**
+     * Match against the given file.
+     *
+     * @param file
+     *            The file path to match.
+     * @return True if any glob in this set matches the given file.
+     */
+    public boolean match(File file) {
+        return match(file.toString());
+    }
+
+    /**
+     * Match against the given file name.
+     *
+     * @param fileName
+     *            The file path to match.
+     * @return True if any glob in this set matches the given file name.
+     */
+    public boolean match(String fileName) {
+        String[] parts = Glob.split(fileName);
+        return match(parts, parts.length);
+    }
+
+    /**
+     * Match against the file path given as the given array of file path parts
+     * of the given length.
+     * 
+     * @param parts
+     *            An array of file path parts.
+     * @param length
+     *            The number of parts in the file path.
+     * @return True if any glob in this set matches the file path.
+     */
+    boolean match(String[] parts, int length) {
+        Automaton automaton = getAutomaton();
+        return trie.match(parts, length).length != 0 || automaton.match(parts, length);
+    }
+
+    /**
+     * Determine whether any descendant of the directory given as the given
+     * array of file path parts of the given length could be matched by any
+     * glob in this set.
+     * 
+     * @param parts
+     *            An array of file path parts.
+     * @param length
+     *            The number of parts in the directory path.
+     * @return True if a descendant of the directory might match a glob in this
+     *         set.
+     */
+    boolean descendable(String[] parts, int length) {
+        Automaton automaton = getAutomaton();
+        return trie.descendable(parts, length) || automaton.descendable(parts, length);
+    }
+
+    /**
+     * Determine whether every descendant of the directory given as the given
+     * array of file path parts of the given length is matched by at least one
+     * glob in this set.
+     * 
+     * @param parts
+     *            An array of file path parts.
+     * @param length
+     *            The number of parts in the directory path.
+     * @return True if every descendant of the directory matches a glob in this
+     *         set.
+     */
+    boolean subsumes(String[] parts, int length) {
+        return getAutomaton().subsumes(parts, length);
+    }
+
+    /**
+     * Determine whether any descendant of the given directory could be matched
+     * by any glob in this set.
+     * 
+     * @param directory
+     *            The directory path.
+     * @return True if a descendant of the directory might match a glob in this
+     *         set.
+     */
+    public boolean descendable(String directory) {
+        String[] parts = Glob.split(directory);
+        return descendable(parts, parts.length);
+    }
+
+    /**
+     * Determine whether every descendant of the given directory is matched by
+     * at least one glob in this set.
+     * 
+     * @param directory
+     *            The directory path.
+     * @return True if every descendant of the directory matches a glob in this
+     *         set.
+     */
+    public boolean subsumes(String directory) {
+        String[] parts = Glob.split(directory);
+        return getAutomaton().subsumes(parts, parts.length);
+    }
+
+    /**
+     * Determine which globs in this set match the given file name. The bits
+     * set in the returned bit set are the indexes of the matching globs.
+     *
+     * @param fileName
+     *            The file path to match.
+     * @return A bit set of the indexes of the globs that match.
+     */
+    public BitSet matches(String fileName) {
+        String[] parts = Glob.split(fileName);
+        Automaton automaton = getAutomaton();
+        boolean[] accepted = new boolean[automaton.size()];
+        automaton.match(parts, parts.length, accepted);
+        BitSet matches = new BitSet(globs.size());
+        for (int i = 0; i < accepted.length; i++) {
+            if (accepted[i]) {
+                matches.set(patterns[i]);
+            }
+        }
+        for (int index : trie.match(parts, parts.length)) {
+            matches.set(index);
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,211 @@
+package com.goodworkalan.comfort.io;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Searches the lines of the files selected by a find for a regular
+ * expression. Files are searched concurrently on a fork/join pool as the
+ * find walk finds them, and each file is read through memory-mapped windows.
+ * Matching lines are sent to a listener as they are found.
+ * <p>
+ * A pattern that contains no regular expression metacharacters and has no
+ * flags, or that has the literal flag, is searched for as a literal string
+ * without using the regular expression engine.
+ *
+ * @author Alan Gutierrez
+ */
+public class Grep {
+    /** The regular expression metacharacters. */
+    private final static String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    /** The find that selects the files to search. */
+    private final Find find;
+
+    /** The pattern to search for. */
+    private final Pattern pattern;
+
+    /** The literal string to search for or null to use the pattern. */
+    private final String literal;
+
+    /** The character set of the files. */
+    private Charset charset = Charset.defaultCharset();
+
+    /** The maximum number of matches to report for a single file. */
+    private int maximum = Integer.MAX_VALUE;
+
+    /**
+     * Create a grep for the given pattern in the files selected by the given
+     * find.
+     *
+     * @param find
+     *            The find that selects the files to search.
+     * @param pattern
+     *            The pattern to search for.
+     */
+    public Grep(Find find, Pattern pattern) {
+        this.find = find;
+        this.pattern = pattern;
+        this.literal = literal(pattern);
+    }
+
+    /**
+     * Get the literal string matched by the given pattern or null if the
+     * pattern must be matched by the regular expression engine.
+     *
+     * @param pattern
+     *            The pattern.
+     * @return The literal string or null.
+     */
+    static String literal(Pattern pattern) {
+        if (pattern.flags() == Pattern.LITERAL) {
+            return pattern.pattern();
+        }
+        if (pattern.flags() != 0) {
+            return null;
+        }
+        String string = pattern.pattern();
+        for (int i = 0, stop = string.length(); i < stop; i++) {
+            if (METACHARACTERS.indexOf(string.charAt(i)) != -1) {
+                return null;
+            }
+        }
+        return string;
+    }
+
+    /**
+     * Decode the files with the given character set. The default is the
+     * platform default character set.
+     *
+     * @param charset
+     *            The character set.
+     * @return This <code>Grep</code> object in order to continue specifying
+     *         options.
+     */
+    public Grep charset(Charset charset) {
+        this.charset = charset;
+        return this;
+    }
+
+    /**
+     * Stop searching a file after the given number of matches.
+     *
+     * @param maximum
+     *            The maximum number of matches to report for a single file.
+     * @return This <code>Grep</code> object in order to continue specifying
+     *         options.
+     * @exception IllegalArgumentException
+     *                If the maximum is less than one.
+     */
+    public Grep maximum(int maximum) {
+        if (maximum < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.maximum = maximum;
+        return this;
+    }
+
+    /**
+     * Search the files selected by the find in the given directory for lines
+     * that match the pattern, searching files concurrently using the given
+     * fork/join pool and sending each matching line to the given listener.
+     * Each regular file is submitted for searching as soon as the walk finds
+     * it. This method returns when the search is complete.
+     *
+     * @param directory
+     *            The directory to search.
+     * @param pool
+     *            The fork/join pool used to search files concurrently.
+     * @param listener
+     *            The listener that receives the matching lines.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    public void grep(File directory, final ForkJoinPool pool, final GrepListener listener) {
+        final Queue<GrepTask> tasks = new ConcurrentLinkedQueue<GrepTask>();
+        try {
+            new Find(find).filesOnly().find(directory, pool, new FindListener() {
+                public void found(File base, String filePath) {
+                    GrepTask task = new GrepTask(Grep.this, base, filePath, listener);
+                    tasks.add(task);
+                    pool.execute(task);
+                }
+            });
+        } finally {
+            for (GrepTask task : tasks) {
+                task.quietlyJoin();
+            }
+        }
+        for (GrepTask task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Search a single file for lines that match the pattern, sending each
+     * matching line to the given listener, stopping after the maximum number
+     * of matches.
+     *
+     * @param base
+     *            The base directory of the search.
+     * @param filePath
+     *            The relative path of the file.
+     * @param listener
+     *            The listener that receives the matching lines.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    void grep(File base, String filePath, GrepListener listener) {
+        LineIterator lines = Files.lines(new File(base, filePath), charset);
+        try {
+            Matcher matcher = literal == null ? pattern.matcher("") : null;
+            long lineNumber = 0;
+            int count = 0;
+            CharSequence line;
+            while (count < maximum && (line = lines.nextSequence()) != null) {
+                lineNumber++;
+                if (literal == null ? matcher.reset(line).find() : contains(line, literal)) {
+                    listener.match(base, filePath, lineNumber, line.toString());
+                    count++;
+                }
+            }
+        } finally {
+            lines.close();
+        }
+    }
+
+    /**
+     * Determine whether the given character sequence contains the given
+     * literal string.
+     *
+     * @param sequence
+     *            The character sequence.
+     * @param literal
+     *            The literal string.
+     * @return True if the literal string occurs in the character sequence.
+     */
+    static boolean contains(CharSequence sequence, String literal) {
+        int length = literal.length();
+        if (length == 0) {
+            return true;
+        }
+        char first = literal.charAt(0);
+        for (int i = 0, stop = sequence.length() - length; i <= stop; i++) {
+            if (sequence.charAt(i) == first) {
+                int j = 1;
+                while (j < length && sequence.charAt(i + j) == literal.charAt(j)) {
+                    j++;
+                }
+                if (j == length) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
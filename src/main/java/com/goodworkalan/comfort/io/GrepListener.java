@@ -0,0 +1,28 @@
+package com.goodworkalan.comfort.io;
+
+import java.io.File;
+
+/**
+ * Receives the lines that match the pattern of a grep as they are found.
+ * Files are searched concurrently, so the listener is invoked by multiple
+ * threads and implementations must be thread-safe. The matches within a
+ * single file are received in line order.
+ *
+ * @author Alan Gutierrez
+ */
+public interface GrepListener {
+    /**
+     * Notify the listener that the given line of the file at the given
+     * relative path matches the pattern.
+     *
+     * @param base
+     *            The base directory of the search.
+     * @param filePath
+     *            The relative path of the file.
+     * @param lineNumber
+     *            The line number, starting at one.
+     * @param line
+     *            The matching line without its line terminator.
+     */
+    public void match(File base, String filePath, long lineNumber, String line);
+}
@@ -0,0 +1,55 @@
+package com.goodworkalan.comfort.io;
+
+import java.io.File;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A fork/join task that searches a single file for lines that match the
+ * pattern of a grep. A task is submitted for each file as the find walk
+ * finds it, so that files are searched while the walk continues.
+ *
+ * @author Alan Gutierrez
+ */
+class GrepTask extends RecursiveAction {
+    /** The serial version id. */
+    private static final long serialVersionUID = 1L;
+
+    /** The grep. */
+    private final Grep grep;
+
+    /** The base directory of the search. */
+    private final File base;
+
+    /** The relative path of the file to search. */
+    private final String filePath;
+
+    /** The listener that receives the matching lines. */
+    private final GrepListener listener;
+
+    /**
+     * Create a task to search the given file.
+     *
+     * @param grep
+     *            The grep.
+     * @param base
+     *            The base directory of the search.
+     * @param filePath
+     *            The relative path of the file to search.
+     * @param listener
+     *            The listener that receives the matching lines.
+     */
+    public GrepTask(Grep grep, File base, String filePath, GrepListener listener) {
+        this.grep = grep;
+        this.base = base;
+        this.filePath = filePath;
+        this.listener = listener;
+    }
+
+    /**
+     * Search the file.
+     */
+    @Override
+    protected void compute() {
+        grep.grep(base, filePath, listener);
+    }
+}
@@ -0,0 +1,191 @@
+package com.goodworkalan.comfort.io;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A batch of atomic file writes that are made durable together. Each write
+ * goes to a temporary file in the same directory as its target and is not
+ * visible to readers until the batch is committed. A commit forces every
+ * temporary file to the storage device, renames each temporary file over its
+ * target, and then forces each distinct target directory once.
+ * <p>
+ * Forcing the files back to back at a single commit point, rather than one at
+ * a time as each file is written, gives the file system the opportunity to
+ * combine the journal commits of the batch, and a directory that receives
+ * many files of the batch is forced only once. Java offers no call to force
+ * an entire file system, so each file is still forced individually.
+ * <p>
+ * If the number of pending writes reaches the batch size, the batch is
+ * committed automatically. Writes may be added by multiple threads, but a
+ * file should not be written more than once in a single batch.
+ *
+ * @author Alan Gutierrez
+ */
+public class GroupCommit {
+    /** The number of pending writes that triggers a commit. */
+    private final int batchSize;
+
+    /** The pending temporary files and their targets. */
+    private List<File[]> pending = new ArrayList<File[]>();
+
+    /**
+     * Create a group commit that is only committed explicitly.
+     */
+    public GroupCommit() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a group commit that is committed automatically when the number of
+     * pending writes reaches the given batch size.
+     *
+     * @param batchSize
+     *            The number of pending writes that triggers a commit.
+     * @exception IllegalArgumentException
+     *                If the batch size is less than one.
+     */
+    public GroupCommit(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Write the given list of lines encoded with the given character set to a
+     * temporary file that will replace the given file when the batch is
+     * committed.
+     *
+     * @param file
+     *            The file to write to.
+     * @param lines
+     *            The lines to write.
+     * @param charset
+     *            The character set.
+     * @exception ComfortIOException
+     *                To wrap an I/O exception if the file cannot be written.
+     */
+    public void pour(File file, Collection<?> lines, Charset charset) {
+        File temporary = Files.temporary(file);
+        try {
+            Files.pour(temporary, lines, charset, Files.DEFAULT_POUR_BUFFER_SIZE, false);
+        } catch (RuntimeException e) {
+            temporary.delete();
+            throw e;
+        }
+        add(temporary, file);
+    }
+
+    /**
+     * Copy the given source file to a temporary file that will replace the
+     * given destination file when the batch is committed.
+     *
+     * @param source
+     *            The source file.
+     * @param destination
+     *            The destination file.
+     * @return The number of bytes copied and the elapsed time.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    public Transfer copy(File source, File destination) {
+        File temporary = Files.temporary(destination);
+        Transfer transfer;
+        try {
+            transfer = Files.copy(source, temporary, Files.DEFAULT_CHUNK_SIZE, false);
+        } catch (RuntimeException e) {
+            temporary.delete();
+            throw e;
+        }
+        add(temporary, destination);
+        return transfer;
+    }
+
+    /**
+     * Add the given temporary file and its target to the pending writes,
+     * committing the batch if it is full.
+     *
+     * @param temporary
+     *            The temporary file.
+     * @param target
+     *            The file it will replace.
+     */
+    private void add(File temporary, File target) {
+        boolean full;
+        synchronized (this) {
+            pending.add(new File[] { temporary, target });
+            full = pending.size() >= batchSize;
+        }
+        if (full) {
+            commit();
+        }
+    }
+
+    /**
+     * Get the number of writes waiting to be committed.
+     *
+     * @return The number of pending writes.
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Take the pending writes, leaving an empty batch for subsequent writes.
+     *
+     * @return The pending writes.
+     */
+    private synchronized List<File[]> take() {
+        List<File[]> batch = pending;
+        pending = new ArrayList<File[]>();
+        return batch;
+    }
+
+    /**
+     * Force every pending temporary file to the storage device, rename each
+     * over its target, then force each distinct target directory. If a file
+     * cannot be forced or renamed, the temporary files that have not been
+     * renamed are deleted.
+     *
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    public void commit() {
+        List<File[]> batch = take();
+        int renamed = 0;
+        try {
+            for (File[] write : batch) {
+                Files.force(write[0]);
+            }
+            Set<File> directories = new LinkedHashSet<File>();
+            for (File[] write : batch) {
+                Files.rename(write[0], write[1]);
+                directories.add(write[1].getAbsoluteFile().getParentFile());
+                renamed++;
+            }
+            for (File directory : directories) {
+                Files.forceDirectory(directory);
+            }
+        } finally {
+            for (int i = renamed, stop = batch.size(); i < stop; i++) {
+                batch.get(i)[0].delete();
+            }
+        }
+    }
+
+    /**
+     * Discard the pending writes, deleting their temporary files and leaving
+     * their targets unchanged.
+     */
+    public void rollback() {
+        for (File[] write : take()) {
+            write[0].delete();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.goodworkalan.comfort.io;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The basic file attributes of a file recorded in a directory listing. Only
+ * the file type, size and modification time are recorded. The creation and
+ * last access times are reported as the modification time and there is no
+ * file key.
+ *
+ * @author Alan Gutierrez
+ */
+final class IndexedAttributes implements BasicFileAttributes {
+    /** The type of a regular file. */
+    final static byte REGULAR_FILE = 1;
+
+    /** The type of a directory. */
+    final static byte DIRECTORY = 2;
+
+    /** The type of a symbolic link. */
+    final static byte SYMBOLIC_LINK = 3;
+
+    /** The type of any other file. */
+    final static byte OTHER = 4;
+
+    /** The file type. */
+    private final byte type;
+
+    /** The file size. */
+    private final long size;
+
+    /** The modification time in milliseconds since the epoch. */
+    private final long lastModified;
+
+    /**
+     * Create recorded attributes.
+     * 
+     * @param type
+     *            The file type.
+     * @param size
+     *            The file size.
+     * @param lastModified
+     *            The modification time in milliseconds since the epoch.
+     */
+    public IndexedAttributes(byte type, long size, long lastModified) {
+        this.type = type;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Record the given basic file attributes.
+     * 
+     * @param attributes
+     *            The basic file attributes.
+     */
+    public IndexedAttributes(BasicFileAttributes attributes) {
+        this(attributes.isRegularFile() ? REGULAR_FILE
+                : attributes.isDirectory() ? DIRECTORY
+                : attributes.isSymbolicLink() ? SYMBOLIC_LINK : OTHER,
+             attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    /**
+     * Get the file type.
+     * 
+     * @return The file type.
+     */
+    public byte getType() {
+        return type;
+    }
+
+    /**
+     * Get the modification time in milliseconds since the epoch.
+     * 
+     * @return The modification time.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Get the recorded modification time.
+     * 
+     * @return The modification time.
+     */
+    public FileTime lastModifiedTime() {
+        return FileTime.from(lastModified, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the last access time, which is not recorded, so the modification
+     * time is returned.
+     * 
+     * @return The modification time.
+     */
+    public FileTime lastAccessTime() {
+        return lastModifiedTime();
+    }
+
+    /**
+     * Get the creation time, which is not recorded, so the modification time
+     * is returned.
+     * 
+     * @return The modification time.
+     */
+    public FileTime creationTime() {
+        return lastModifiedTime();
+    }
+
+    /**
+     * Return true if the file is a regular file.
+     * 
+     * @return True if the file is a regular file.
+     */
+    public boolean isRegularFile() {
+        return type == REGULAR_FILE;
+    }
+
+    /**
+     * Return true if the file is a directory.
+     * 
+     * @return True if the file is a directory.
+     */
+    public boolean isDirectory() {
+        return type == DIRECTORY;
+    }
+
+    /**
+     * Return true if the file is a symbolic link.
+     * 
+     * @return True if the file is a symbolic link.
+     */
+    public boolean isSymbolicLink() {
+        return type == SYMBOLIC_LINK;
+    }
+
+    /**
+     * Return true if the file is not a regular file, directory or symbolic
+     * link.
+     * 
+     * @return True if the file is some other type of file.
+     */
+    public boolean isOther() {
+        return type == OTHER;
+    }
+
+    /**
+     * Get the recorded file size.
+     * 
+     * @return The file size.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Get the file key, which is not recorded.
+     * 
+     * @return Null.
+     */
+    public Object fileKey() {
+        return null;
+    }
+}
@@ -0,0 +1,24 @@
+package com.goodworkalan.comfort.io;
+
+/**
+ * Processes the lines of a file that is split into regions that are read
+ * concurrently. The handler is invoked by multiple threads and
+ * implementations must be thread-safe.
+ *
+ * @param <T>
+ *            The type of result produced for a line.
+ *
+ * @author Alan Gutierrez
+ */
+public interface LineHandler<T> {
+    /**
+     * Process the given line and return a result, or null if the line
+     * produces no result. The line is a view into a buffer that is only valid
+     * for the duration of the call.
+     *
+     * @param line
+     *            The line without its line terminator.
+     * @return The result for the line or null.
+     */
+    public T line(CharSequence line);
+}
@@ -0,0 +1,333 @@
+package com.goodworkalan.comfort.io;
+
+import static com.goodworkalan.comfort.io.ComfortIOException.READ_FAILURE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator over the lines of a text file that maps the file into memory one
+ * window at a time and decodes it lazily into a fixed character buffer. Memory
+ * use does not depend on the size of the file. The character buffer only
+ * grows if a single line is longer than the buffer.
+ * <p>
+ * Lines are terminated by a line feed, a carriage return, or a carriage return
+ * followed by a line feed, as with <code>BufferedReader.readLine</code>, and
+ * line terminators are removed. Malformed input is replaced with the replacement
+ * character of the character set, as with <code>FileReader</code>.
+ * <p>
+ * The {@link #nextSequence()} method returns each line as a character sequence
+ * view into the character buffer, without creating a string for each line. The
+ * view is only valid until the next line is read.
+ * <p>
+ * The iterator closes the file when it is exhausted. An iterator that is
+ * abandoned before it is exhausted must be closed.
+ *
+ * @author Alan Gutierrez
+ */
+public class LineIterator implements Iterator<String>, Closeable {
+    /** The default number of bytes mapped at a time. */
+    final static int DEFAULT_WINDOW_SIZE = 16 * 1024 * 1024;
+
+    /** The default initial size of the character buffer. */
+    final static int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /** The file. */
+    private final File file;
+
+    /** The file channel or null if closed. */
+    private FileChannel channel;
+
+    /** The file position of the end of the lines to read. */
+    private final long size;
+
+    /** The number of bytes to map at a time. */
+    private final int windowSize;
+
+    /** The character set decoder. */
+    private final CharsetDecoder decoder;
+
+    /** The currently mapped window of the file. */
+    private ByteBuffer bytes;
+
+    /** The file position of the first byte of the mapped window. */
+    private long windowStart;
+
+    /** Whether the final window of the file has been mapped. */
+    private boolean endOfInput;
+
+    /** Whether the decoder has been flushed and all characters decoded. */
+    private boolean flushed;
+
+    /** The decoded characters. */
+    private char[] chars;
+
+    /** The view of the current line in the decoded characters. */
+    private CharBuffer view;
+
+    /** The index of the first character of the next line. */
+    private int start;
+
+    /** The index at which to resume searching for a line terminator. */
+    private int scan;
+
+    /** The number of decoded characters in the character buffer. */
+    private int limit;
+
+    /** Whether the view contains a line that has not yet been returned. */
+    private boolean ready;
+
+    /**
+     * Create a line iterator over the given file decoded with the given
+     * character set, mapping the given number of bytes at a time into a
+     * character buffer of the given initial size.
+     *
+     * @param file
+     *            The file to read.
+     * @param charset
+     *            The character set.
+     * @param windowSize
+     *            The number of bytes to map at a time.
+     * @param bufferSize
+     *            The initial size of the character buffer.
+     * @exception ComfortIOException
+     *                If the file cannot be opened.
+     */
+    LineIterator(File file, Charset charset, int windowSize, int bufferSize) {
+        this(file, charset, 0, -1, windowSize, bufferSize);
+    }
+
+    /**
+     * Create a line iterator over the region of the given file that starts at
+     * the given file position and ends at the given file position, decoded
+     * with the given character set, mapping the given number of bytes at a
+     * time into a character buffer of the given initial size. The region must
+     * start at the start of a line.
+     * 
+     * @param file
+     *            The file to read.
+     * @param charset
+     *            The character set.
+     * @param start
+     *            The file position of the start of the region.
+     * @param end
+     *            The file position of the end of the region, or -1 to read to
+     *            the end of the file.
+     * @param windowSize
+     *            The number of bytes to map at a time.
+     * @param bufferSize
+     *            The initial size of the character buffer.
+     * @exception ComfortIOException
+     *                If the file cannot be opened.
+     */
+    LineIterator(File file, Charset charset, long start, long end, int windowSize, int bufferSize) {
+        if (windowSize < 16 || bufferSize < 2 || start < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.file = file;
+        this.windowSize = windowSize;
+        this.decoder = charset.newDecoder()
+                              .onMalformedInput(CodingErrorAction.REPLACE)
+                              .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = new char[bufferSize];
+        this.view = CharBuffer.wrap(chars);
+        this.windowStart = start;
+        try {
+            this.channel = new FileInputStream(file).getChannel();
+            this.size = end < 0 ? channel.size() : Math.min(end, channel.size());
+        } catch (IOException e) {
+            close();
+            throw new ComfortIOException(READ_FAILURE, e, file);
+        }
+    }
+
+    /**
+     * Map the next window of the file, starting with the first byte not yet
+     * consumed by the decoder.
+     *
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    private void map() throws IOException {
+        if (bytes != null) {
+            windowStart += bytes.position();
+        }
+        long length = Math.min(windowSize, size - windowStart);
+        bytes = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, length);
+        endOfInput = windowStart + length == size;
+    }
+
+    /**
+     * Decode more characters into the character buffer after moving the
+     * unread characters to the start of the buffer, growing the buffer if it
+     * is full of unread characters.
+     *
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(chars, start, chars, 0, limit - start);
+            limit -= start;
+            scan -= start;
+            start = 0;
+        }
+        if (chars.length - limit < 2) {
+            char[] grown = new char[chars.length * 2];
+            System.arraycopy(chars, 0, grown, 0, limit);
+            chars = grown;
+            view = CharBuffer.wrap(chars);
+        }
+        CharBuffer out = CharBuffer.wrap(chars, limit, chars.length - limit);
+        int position = out.position();
+        while (!flushed && out.position() == position) {
+            if (bytes == null || (!bytes.hasRemaining() && !endOfInput)) {
+                map();
+            }
+            CoderResult result = decoder.decode(bytes, out, endOfInput);
+            if (result.isUnderflow()) {
+                if (endOfInput) {
+                    flushed = decoder.flush(out).isUnderflow();
+                } else {
+                    map();
+                }
+            } else if (result.isError()) {
+                result.throwException();
+            }
+        }
+        limit = out.position();
+    }
+
+    /**
+     * Find the next line in the file and set the view to the characters of the
+     * line.
+     *
+     * @return True if a line was found, false if the file is exhausted.
+     */
+    private boolean advance() {
+        if (channel == null) {
+            return false;
+        }
+        try {
+            for (;;) {
+                for (int i = scan; i < limit; i++) {
+                    char ch = chars[i];
+                    if (ch == '\n' || ch == '\r') {
+                        if (ch == '\r' && i + 1 == limit && !flushed) {
+                            scan = i;
+                            break;
+                        }
+                        view.limit(i).position(start);
+                        start = scan = i + 1;
+                        if (ch == '\r' && i + 1 < limit && chars[i + 1] == '\n') {
+                            start = scan = i + 2;
+                        }
+                        return true;
+                    }
+                    scan = i + 1;
+                }
+                if (flushed) {
+                    if (start < limit) {
+                        view.limit(limit).position(start);
+                        start = scan = limit;
+                        return true;
+                    }
+                    close();
+                    return false;
+                }
+                fill();
+            }
+        } catch (CharacterCodingException e) {
+            close();
+            throw new ComfortIOException(READ_FAILURE, e, file);
+        } catch (IOException e) {
+            close();
+            throw new ComfortIOException(READ_FAILURE, e, file);
+        }
+    }
+
+    /**
+     * Return true if there is another line in the file.
+     *
+     * @return True if there is another line.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    public boolean hasNext() {
+        if (!ready) {
+            ready = advance();
+        }
+        return ready;
+    }
+
+    /**
+     * Return the next line in the file as a string.
+     *
+     * @return The next line.
+     * @exception NoSuchElementException
+     *                If the file is exhausted.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ready = false;
+        return view.toString();
+    }
+
+    /**
+     * Return the next line in the file as a character sequence view into the
+     * character buffer of this iterator. The view is only valid until the next
+     * line is read.
+     *
+     * @return The next line or null if the file is exhausted.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    public CharSequence nextSequence() {
+        if (!hasNext()) {
+            return null;
+        }
+        ready = false;
+        return view;
+    }
+
+    /**
+     * Lines cannot be removed through a line iterator.
+     *
+     * @exception UnsupportedOperationException
+     *                Always.
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Close the file. Closing an iterator that is exhausted or already closed
+     * has no effect.
+     */
+    public void close() {
+        bytes = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.goodworkalan.comfort.io;
+
+import static com.goodworkalan.comfort.io.ComfortIOException.READ_FAILURE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A fork/join task that processes the lines in a region of a file, splitting
+ * the region in two at a line feed and forking a task for the first half if
+ * the region is larger than the split threshold.
+ * <p>
+ * When the task is ordered, each task returns the results of its region and
+ * the results of the halves are concatenated in file order. When the task is
+ * unordered, the results are added to a shared concurrent collection as they
+ * are produced and each task returns null.
+ *
+ * @param <T>
+ *            The type of result produced for a line.
+ *
+ * @author Alan Gutierrez
+ */
+class LineTask<T> extends RecursiveTask<List<T>> {
+    /** The serial version id. */
+    private static final long serialVersionUID = 1L;
+
+    /** The file. */
+    private final File file;
+
+    /** The file channel used to search for line feeds. */
+    private final FileChannel channel;
+
+    /** The character set. */
+    private final Charset charset;
+
+    /** The line handler. */
+    private final LineHandler<T> handler;
+
+    /** The shared collection of results or null if the task is ordered. */
+    private final Collection<T> results;
+
+    /** The size of a region that is processed without splitting. */
+    private final long threshold;
+
+    /** The file position of the start of the region. */
+    private final long start;
+
+    /** The file position of the end of the region. */
+    private final long end;
+
+    /**
+     * Create a task to process the lines in the given region of the given
+     * file.
+     * 
+     * @param file
+     *            The file.
+     * @param channel
+     *            The file channel used to search for line feeds.
+     * @param charset
+     *            The character set.
+     * @param handler
+     *            The line handler.
+     * @param results
+     *            The shared collection of results or null if the task is
+     *            ordered.
+     * @param threshold
+     *            The size of a region that is processed without splitting.
+     * @param start
+     *            The file position of the start of the region, which must be
+     *            the start of a line.
+     * @param end
+     *            The file position of the end of the region, which must be
+     *            the end of the file or follow a line feed.
+     */
+    public LineTask(File file, FileChannel channel, Charset charset, LineHandler<T> handler, Collection<T> results, long threshold, long start, long end) {
+        this.file = file;
+        this.channel = channel;
+        this.charset = charset;
+        this.handler = handler;
+        this.results = results;
+        this.threshold = threshold;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Process the lines in the region, splitting the region at the first line
+     * feed after its midpoint if it is larger than the split threshold.
+     * 
+     * @return The results in file order or null if the task is unordered.
+     */
+    @Override
+    protected List<T> compute() {
+        if (end - start > threshold) {
+            long split = split(start + (end - start) / 2);
+            if (split < end) {
+                LineTask<T> first = new LineTask<T>(file, channel, charset, handler, results, threshold, start, split);
+                first.fork();
+                List<T> second = new LineTask<T>(file, channel, charset, handler, results, threshold, split, end).compute();
+                List<T> merged = first.join();
+                if (merged != null) {
+                    merged.addAll(second);
+                }
+                return merged;
+            }
+        }
+        List<T> list = results == null ? new ArrayList<T>() : null;
+        Collection<T> collection = list == null ? results : list;
+        LineIterator lines = new LineIterator(file, charset, start, end, LineIterator.DEFAULT_WINDOW_SIZE, LineIterator.DEFAULT_BUFFER_SIZE);
+        try {
+            CharSequence line;
+            while ((line = lines.nextSequence()) != null) {
+                T result = handler.line(line);
+                if (result != null) {
+                    collection.add(result);
+                }
+            }
+        } finally {
+            lines.close();
+        }
+        return list;
+    }
+
+    /**
+     * Find the file position that follows the first line feed at or after the
+     * given file position within the region.
+     * 
+     * @param position
+     *            The file position at which to start searching.
+     * @return The position after the line feed or the end of the region if
+     *         there is no line feed.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    private long split(long position) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 * 1024);
+        try {
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                int read = channel.read(buffer, position);
+                if (read == -1) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        return position + i + 1;
+                    }
+                }
+                position += read;
+            }
+        } catch (IOException e) {
+            throw new ComfortIOException(READ_FAILURE, e, file);
+        }
+        return end;
+    }
+}
@@ -0,0 +1,25 @@
+package com.goodworkalan.comfort.io;
+
+import java.nio.file.Path;
+
+/**
+ * A source of directory listings for a find that walks recorded or cached
+ * listings instead of reading each directory from the file system.
+ *
+ * @author Alan Gutierrez
+ */
+interface Lister {
+    /**
+     * Get the listing of the given directory.
+     * 
+     * @param dir
+     *            The directory.
+     * @param relative
+     *            The relative path of the directory from the base directory
+     *            of the find, or the empty string for the base directory.
+     * @return The listing or null if the directory has no listing.
+     * @exception ComfortIOException
+     *                If the directory cannot be read.
+     */
+    public Listing list(Path dir, String relative);
+}
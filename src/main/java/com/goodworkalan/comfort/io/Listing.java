@@ -0,0 +1,146 @@
+package com.goodworkalan.comfort.io;
+
+import static com.goodworkalan.comfort.io.ComfortIOException.READ_FAILURE;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The names and recorded attributes of the entries of a directory, along
+ * with the modification time of the directory when it was listed and the
+ * time at which it was listed, so that the listing can be revalidated.
+ *
+ * @author Alan Gutierrez
+ */
+final class Listing {
+    /**
+     * The resolution of the file system clock in milliseconds, two seconds to
+     * account for the coarsest common file systems.
+     */
+    final static long RESOLUTION = 2000;
+
+    /** The modification time of the directory when it was listed. */
+    private final long lastModified;
+
+    /** The time at which the directory was listed. */
+    private final long listed;
+
+    /** The names of the directory entries. */
+    private final String[] names;
+
+    /** The attributes of the directory entries. */
+    private final IndexedAttributes[] attributes;
+
+    /**
+     * Create a directory listing.
+     * 
+     * @param lastModified
+     *            The modification time of the directory when it was listed.
+     * @param listed
+     *            The time at which the directory was listed.
+     * @param names
+     *            The names of the directory entries.
+     * @param attributes
+     *            The attributes of the directory entries.
+     */
+    public Listing(long lastModified, long listed, String[] names, IndexedAttributes[] attributes) {
+        this.lastModified = lastModified;
+        this.listed = listed;
+        this.names = names;
+        this.attributes = attributes;
+    }
+
+    /**
+     * List the given directory, reading the attributes of each entry.
+     * 
+     * @param dir
+     *            The directory.
+     * @param lastModified
+     *            The modification time of the directory.
+     * @return The directory listing.
+     * @exception ComfortIOException
+     *                If the directory cannot be read.
+     */
+    public static Listing list(Path dir, long lastModified) {
+        long listed = System.currentTimeMillis();
+        List<String> names = new ArrayList<String>();
+        List<IndexedAttributes> attributes = new ArrayList<IndexedAttributes>();
+        try {
+            DirectoryStream<Path> stream = java.nio.file.Files.newDirectoryStream(dir);
+            try {
+                for (Path path : stream) {
+                    BasicFileAttributes read = Find.attributes(path);
+                    if (read != null) {
+                        names.add(path.getFileName().toString());
+                        attributes.add(new IndexedAttributes(read));
+                    }
+                }
+            } finally {
+                stream.close();
+            }
+        } catch (DirectoryIteratorException e) {
+            throw new ComfortIOException(READ_FAILURE, e.getCause(), dir);
+        } catch (IOException e) {
+            throw new ComfortIOException(READ_FAILURE, e, dir);
+        }
+        return new Listing(lastModified, listed, names.toArray(new String[names.size()]), attributes.toArray(new IndexedAttributes[attributes.size()]));
+    }
+
+    /**
+     * Determine whether this listing is still valid for a directory with the
+     * given modification time. The listing is invalid if the directory was
+     * modified within the given interval before it was listed, because a
+     * change made within the resolution of the file system clock would not
+     * change the modification time.
+     * 
+     * @param lastModified
+     *            The current modification time of the directory.
+     * @param interval
+     *            The resolution of the file system clock in milliseconds.
+     * @return True if the listing is still valid.
+     */
+    public boolean isValid(long lastModified, long interval) {
+        return this.lastModified == lastModified && lastModified + interval < listed;
+    }
+
+    /**
+     * Get the modification time of the directory when it was listed.
+     * 
+     * @return The modification time.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Get the time at which the directory was listed.
+     * 
+     * @return The time of the listing.
+     */
+    public long getListed() {
+        return listed;
+    }
+
+    /**
+     * Get the names of the directory entries.
+     * 
+     * @return The entry names.
+     */
+    public String[] getNames() {
+        return names;
+    }
+
+    /**
+     * Get the attributes of the directory entries.
+     * 
+     * @return The entry attributes.
+     */
+    public IndexedAttributes[] getAttributes() {
+        return attributes;
+    }
+}
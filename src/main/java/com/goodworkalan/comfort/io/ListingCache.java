@@ -0,0 +1,328 @@
+package com.goodworkalan.comfort.io;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A bounded in-memory cache of directory listings that can be shared by
+ * finds that search the same directories, so that each directory is read
+ * once instead of once for each find. When the cache is full, the least
+ * recently used listing is evicted.
+ * <p>
+ * A cached listing is validated either by the modification time of its
+ * directory, which costs a single read of the directory attributes, or by a
+ * time to live, which costs nothing, but which may return a listing that is
+ * out of date by as much as the time to live. A file system only advances
+ * modification times at the resolution of its clock, so an entry added soon
+ * after a directory was listed may not change its modification time. A
+ * listing validated by modification time is therefore only trusted if the
+ * directory was last modified more than two seconds before it was listed,
+ * and a directory that was modified more recently is read again each time it
+ * is searched until its listing is old enough to trust. Either way, the
+ * attributes of the entries of a directory are those read when the directory
+ * was listed.
+ * <p>
+ * The cache counts hits and misses, so that its worth can be measured. The
+ * cache is thread-safe. Finds that miss on the same directory at the same
+ * time share a single read of the directory, and the finds that wait for the
+ * read are counted as hits.
+ *
+ * @author Alan Gutierrez
+ */
+public class ListingCache {
+    /** The maximum number of listings to cache. */
+    private final int capacity;
+
+    /** The time to live in milliseconds, or zero to validate by modification time. */
+    private final long timeToLive;
+
+    /**
+     * The listings, or the reads of listings in progress, in least recently
+     * used order by absolute directory path.
+     */
+    private final Map<Path, FutureTask<Listing>> listings;
+
+    /** The number of listings found in the cache and still valid. */
+    private long hits;
+
+    /** The number of directories read because they were not cached or were out of date. */
+    private long misses;
+
+    /**
+     * Create a listing cache that holds at most the given number of listings
+     * and validates them by the modification time of their directories.
+     *
+     * @param capacity
+     *            The maximum number of listings to cache.
+     * @exception IllegalArgumentException
+     *                If the capacity is less than one.
+     */
+    public ListingCache(int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * Create a listing cache that holds at most the given number of listings
+     * and considers them valid for the given time to live.
+     *
+     * @param capacity
+     *            The maximum number of listings to cache.
+     * @param timeToLive
+     *            The time to live in milliseconds, or zero to validate
+     *            listings by the modification time of their directories.
+     * @exception IllegalArgumentException
+     *                If the capacity is less than one or the time to live is
+     *                negative.
+     */
+    public ListingCache(final int capacity, long timeToLive) {
+        if (capacity < 1 || timeToLive < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+        this.timeToLive = timeToLive;
+        this.listings = new LinkedHashMap<Path, FutureTask<Listing>>(16, 0.75f, true) {
+            /** The serial version id. */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, FutureTask<Listing>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the listing of the given directory from the cache if it is still
+     * valid, otherwise read the directory and cache its listing. If another
+     * thread is already reading the directory, wait for its listing.
+     *
+     * @param dir
+     *            The directory.
+     * @return The listing or null if the directory does not exist or is not
+     *         a directory.
+     * @exception ComfortIOException
+     *                If the directory cannot be read.
+     */
+    Listing list(Path dir) {
+        Path key = dir.toAbsolutePath();
+        for (;;) {
+            FutureTask<Listing> cached;
+            synchronized (this) {
+                cached = listings.get(key);
+            }
+            BasicFileAttributes attributes = null;
+            if (cached != null) {
+                if (!cached.isDone()) {
+                    Listing listing = await(cached);
+                    hit();
+                    return listing;
+                }
+                Listing listing = completed(cached);
+                if (listing != null) {
+                    if (timeToLive != 0) {
+                        if (System.currentTimeMillis() - listing.getListed() < timeToLive) {
+                            hit();
+                            return listing;
+                        }
+                    } else {
+                        attributes = Find.attributes(dir);
+                        if (attributes == null || !attributes.isDirectory()) {
+                            remove(key, cached);
+                            return null;
+                        }
+                        if (listing.isValid(attributes.lastModifiedTime().toMillis(), Listing.RESOLUTION)) {
+                            hit();
+                            return listing;
+                        }
+                    }
+                }
+            }
+            FutureTask<Listing> load = load(dir, attributes);
+            synchronized (this) {
+                if (listings.get(key) != cached) {
+                    continue;
+                }
+                listings.put(key, load);
+                misses++;
+            }
+            load.run();
+            Listing listing;
+            try {
+                listing = await(load);
+            } catch (RuntimeException e) {
+                remove(key, load);
+                throw e;
+            }
+            if (listing == null) {
+                remove(key, load);
+            }
+            return listing;
+        }
+    }
+
+    /**
+     * Create a task that reads the listing of the given directory. If the
+     * directory does not exist, is not a directory, or is deleted while it is
+     * read, the listing is null.
+     *
+     * @param dir
+     *            The directory.
+     * @param attributes
+     *            The attributes of the directory or null if they have not
+     *            been read.
+     * @return A task that reads the listing.
+     */
+    private static FutureTask<Listing> load(final Path dir, final BasicFileAttributes attributes) {
+        return new FutureTask<Listing>(new Callable<Listing>() {
+            public Listing call() {
+                BasicFileAttributes read = attributes == null ? Find.attributes(dir) : attributes;
+                if (read == null || !read.isDirectory()) {
+                    return null;
+                }
+                try {
+                    return Listing.list(dir, read.lastModifiedTime().toMillis());
+                } catch (ComfortIOException e) {
+                    read = Find.attributes(dir);
+                    if (read == null || !read.isDirectory()) {
+                        return null;
+                    }
+                    throw e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Wait for the given read of a listing to complete.
+     *
+     * @param task
+     *            The read of the listing.
+     * @return The listing or null if the directory does not exist.
+     * @exception ComfortIOException
+     *                If the directory cannot be read.
+     */
+    private static Listing await(FutureTask<Listing> task) {
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Get the listing of the given completed read of a listing.
+     *
+     * @param task
+     *            The completed read of the listing.
+     * @return The listing or null if the read failed or the directory did not
+     *         exist.
+     */
+    private static Listing completed(FutureTask<Listing> task) {
+        try {
+            return await(task);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Remove the given read of a listing from the cache if it is still the
+     * cached read of the listing of the directory with the given key.
+     *
+     * @param key
+     *            The absolute directory path.
+     * @param task
+     *            The read of the listing.
+     */
+    private synchronized void remove(Path key, FutureTask<Listing> task) {
+        if (listings.get(key) == task) {
+            listings.remove(key);
+        }
+    }
+
+    /**
+     * Record a hit.
+     */
+    private synchronized void hit() {
+        hits++;
+    }
+
+    /**
+     * Remove the listing of the given directory from the cache, so that it
+     * will be read again the next time it is searched.
+     *
+     * @param directory
+     *            The directory.
+     */
+    public synchronized void invalidate(File directory) {
+        listings.remove(directory.toPath().toAbsolutePath());
+    }
+
+    /**
+     * Get the maximum number of listings to cache.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of listings currently cached.
+     *
+     * @return The number of cached listings.
+     */
+    public synchronized int size() {
+        return listings.size();
+    }
+
+    /**
+     * Get the number of listings found in the cache and still valid.
+     *
+     * @return The number of cache hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of directories read because they were not cached or
+     * their cached listings were out of date.
+     *
+     * @return The number of cache misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Remove every listing from the cache and reset the statistics.
+     */
+    public synchronized void clear() {
+        listings.clear();
+        hits = misses = 0;
+    }
+}
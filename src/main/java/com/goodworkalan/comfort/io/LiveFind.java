@@ -0,0 +1,493 @@
+package com.goodworkalan.comfort.io;
+
+import static com.goodworkalan.comfort.io.ComfortIOException.READ_FAILURE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A set of the files that match the conditions of a find that is kept up to
+ * date as the file system changes. The directory is searched once, and each
+ * directory that the find descends into is registered with a watch service.
+ * File system events then update the set of matching files incrementally and
+ * are published to listeners as additions, modifications and deletions.
+ * <p>
+ * Events are processed either by calling {@link #process(long, TimeUnit)}
+ * from a thread of the application's choosing, or by a daemon thread created
+ * by {@link #start()}. If the watch service overflows and events are lost,
+ * the directory is searched again and the differences are published. If the
+ * directory cannot be searched again, it is searched again the next time
+ * events are processed.
+ * <p>
+ * An exception thrown by a listener does not stop the live find. It is
+ * reported to the {@link LiveFindListener#failed(File, RuntimeException)
+ * failed} method of each listener, as are new directories that cannot be read
+ * and failures of the daemon thread.
+ * <p>
+ * The watch service is platform dependent. Where the platform has no native
+ * file system notification, the watch service polls, and events are
+ * delivered after a delay.
+ *
+ * @author Alan Gutierrez
+ */
+public class LiveFind implements Closeable {
+    /** The find conditions. */
+    private final Find find;
+
+    /** The base directory of the find. */
+    private final File base;
+
+    /** The watch service. */
+    private final WatchService watcher;
+
+    /** The watched directories by watch key. */
+    private final Map<WatchKey, WatchedDirectory> watched = new HashMap<WatchKey, WatchedDirectory>();
+
+    /** The relative paths of the matching files. */
+    private final SortedSet<String> matches = new TreeSet<String>();
+
+    /** The listeners. */
+    private final List<LiveFindListener> listeners = new CopyOnWriteArrayList<LiveFindListener>();
+
+    /**
+     * The number of seconds the daemon thread waits before trying again to
+     * search the directory after a failed search.
+     */
+    final static long RETRY_INTERVAL = 1;
+
+    /** Whether events were lost and the directory must be searched again. */
+    private boolean stale;
+
+    /** The thread processing events or null if not started. */
+    private Thread thread;
+
+    /**
+     * Search the given directory for the files that match the given find
+     * conditions and watch it for changes.
+     *
+     * @param find
+     *            The find conditions.
+     * @param directory
+     *            The directory to search.
+     * @exception ComfortIOException
+     *                If the directory cannot be read or watched.
+     */
+    public LiveFind(Find find, File directory) {
+        this.find = find;
+        this.base = directory;
+        try {
+            this.watcher = directory.toPath().getFileSystem().newWatchService();
+        } catch (IOException e) {
+            throw new ComfortIOException(READ_FAILURE, e, directory);
+        }
+        List<String> found = new ArrayList<String>();
+        try {
+            walk(new WatchedDirectory(directory.toPath(), "", new String[1], 0), found);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        matches.addAll(found);
+    }
+
+    /**
+     * Add a listener that receives changes to the set of matching files.
+     *
+     * @param listener
+     *            The listener.
+     * @return This <code>LiveFind</code> in order to continue adding
+     *         listeners.
+     */
+    public LiveFind addListener(LiveFindListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Get a copy of the relative paths of the files that currently match the
+     * conditions of the find.
+     *
+     * @return The matching files in sorted order.
+     */
+    public SortedSet<String> getMatches() {
+        synchronized (matches) {
+            return new TreeSet<String>(matches);
+        }
+    }
+
+    /**
+     * Register the given directory with the watch service and search it,
+     * adding the matching files to the given list and descending into the
+     * subdirectories that the find could match.
+     *
+     * @param watch
+     *            The directory.
+     * @param found
+     *            The list of matching files.
+     * @exception ComfortIOException
+     *                If the directory cannot be read or watched.
+     */
+    private void walk(WatchedDirectory watch, List<String> found) {
+        try {
+            watched.put(watch.dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), watch);
+            DirectoryStream<Path> stream = java.nio.file.Files.newDirectoryStream(watch.dir);
+            try {
+                for (Path path : stream) {
+                    entry(watch, path, found);
+                }
+            } finally {
+                stream.close();
+            }
+        } catch (DirectoryIteratorException e) {
+            throw new ComfortIOException(READ_FAILURE, e.getCause(), watch.dir);
+        } catch (IOException e) {
+            throw new ComfortIOException(READ_FAILURE, e, watch.dir);
+        }
+    }
+
+    /**
+     * Test the given entry of the given watched directory against the find
+     * conditions, adding it to the given list if it matches, and walking it
+     * if it is a directory that the find could match.
+     *
+     * @param watch
+     *            The watched directory.
+     * @param path
+     *            The directory entry.
+     * @param found
+     *            The list of matching files.
+     */
+    private void entry(WatchedDirectory watch, Path path, List<String> found) {
+        BasicFileAttributes attributes = Find.attributes(path);
+        if (attributes == null) {
+            return;
+        }
+        String name = path.getFileName().toString();
+        String relative = watch.directory + name;
+        watch.parts[watch.length] = name;
+        if (find.accept(base, relative, watch.parts, watch.length + 1, attributes)) {
+            found.add(relative);
+        }
+        if (attributes.isDirectory() && find.descend(base, watch.parts, watch.length + 1)) {
+            walk(new WatchedDirectory(path, relative + File.separator, Arrays.copyOf(watch.parts, watch.length + 2), watch.length + 1), found);
+        }
+    }
+
+    /**
+     * Wait up to the given timeout for file system events and process all of
+     * the events that are available, updating the set of matching files and
+     * notifying the listeners. If a previous search of the directory after
+     * events were lost failed, the directory is searched again first. The
+     * wait for events does not hold the lock that serializes the processing
+     * of events, so that events can be processed by more than one thread.
+     *
+     * @param timeout
+     *            The time to wait for an event.
+     * @param unit
+     *            The unit of the timeout.
+     * @return The number of changes published to listeners.
+     * @throws InterruptedException
+     *             If the thread is interrupted while waiting.
+     * @exception ComfortIOException
+     *                If the directory cannot be searched again after events
+     *                were lost.
+     */
+    public int process(long timeout, TimeUnit unit) throws InterruptedException {
+        int changes = 0;
+        synchronized (this) {
+            if (stale) {
+                changes += rescan();
+            }
+        }
+        WatchKey key = watcher.poll(timeout, unit);
+        while (key != null) {
+            synchronized (this) {
+                changes += process(key);
+            }
+            key = watcher.poll();
+        }
+        return changes;
+    }
+
+    /**
+     * Process the events of the given watch key and reset the key, so that it
+     * is queued again when more events arrive.
+     *
+     * @param key
+     *            The watch key.
+     * @return The number of changes published to listeners.
+     */
+    private int process(WatchKey key) {
+        try {
+            return events(key);
+        } finally {
+            if (!key.reset()) {
+                watched.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Process the pending events of the given watch key. A new directory that
+     * cannot be read is reported to the listeners, unless it no longer exists.
+     *
+     * @param key
+     *            The watch key.
+     * @return The number of changes published to listeners.
+     * @exception ComfortIOException
+     *                If events were lost and the directory cannot be searched
+     *                again.
+     */
+    private int events(WatchKey key) {
+        int changes = 0;
+        WatchedDirectory watch = watched.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                stale = true;
+                changes += rescan();
+                break;
+            }
+            if (watch == null) {
+                continue;
+            }
+            Path path = watch.dir.resolve((Path) event.context());
+            String relative = watch.directory + path.getFileName();
+            BasicFileAttributes attributes = event.kind() == ENTRY_DELETE ? null : Find.attributes(path);
+            if (attributes == null) {
+                changes += delete(relative);
+                continue;
+            }
+            watch.parts[watch.length] = path.getFileName().toString();
+            boolean matched = find.accept(base, relative, watch.parts, watch.length + 1, attributes);
+            boolean contained;
+            synchronized (matches) {
+                contained = matched ? !matches.add(relative) : matches.remove(relative);
+            }
+            if (matched && contained) {
+                changes += publish(relative, ENTRY_MODIFY);
+            } else if (matched) {
+                changes += publish(relative, ENTRY_CREATE);
+            } else if (contained) {
+                changes += publish(relative, ENTRY_DELETE);
+            }
+            if (event.kind() == ENTRY_CREATE && attributes.isDirectory() && find.descend(base, watch.parts, watch.length + 1)) {
+                List<String> found = new ArrayList<String>();
+                try {
+                    walk(new WatchedDirectory(path, relative + File.separator, Arrays.copyOf(watch.parts, watch.length + 2), watch.length + 1), found);
+                } catch (ComfortIOException e) {
+                    if (Find.attributes(path) != null) {
+                        failed(e);
+                    }
+                }
+                for (String filePath : found) {
+                    boolean added;
+                    synchronized (matches) {
+                        added = matches.add(filePath);
+                    }
+                    if (added) {
+                        changes += publish(filePath, ENTRY_CREATE);
+                    }
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Remove the given relative path and every matching path beneath it from
+     * the set of matching files, notifying the listeners of each deletion.
+     * The watches of the directories beneath the relative path are cancelled,
+     * since a directory that has been moved away would otherwise continue to
+     * report events under its old path.
+     *
+     * @param relative
+     *            The relative path.
+     * @return The number of changes published to listeners.
+     */
+    private int delete(String relative) {
+        String prefix = relative + File.separator;
+        Iterator<Map.Entry<WatchKey, WatchedDirectory>> entries = watched.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<WatchKey, WatchedDirectory> entry = entries.next();
+            if (entry.getValue().directory.startsWith(prefix)) {
+                entry.getKey().cancel();
+                entries.remove();
+            }
+        }
+        List<String> deleted = new ArrayList<String>();
+        synchronized (matches) {
+            if (matches.remove(relative)) {
+                deleted.add(relative);
+            }
+            SortedSet<String> descendants = matches.subSet(prefix, prefix + Character.MAX_VALUE);
+            deleted.addAll(descendants);
+            descendants.clear();
+        }
+        for (String filePath : deleted) {
+            publish(filePath, ENTRY_DELETE);
+        }
+        return deleted.size();
+    }
+
+    /**
+     * Search the directory again after events have been lost, watching every
+     * directory anew, and publish the differences between the new set of
+     * matching files and the old. The live find remains stale until the
+     * search succeeds.
+     *
+     * @return The number of changes published to listeners.
+     * @exception ComfortIOException
+     *                If the directory cannot be searched.
+     */
+    private int rescan() {
+        for (WatchKey key : watched.keySet()) {
+            key.cancel();
+        }
+        watched.clear();
+        List<String> found = new ArrayList<String>();
+        walk(new WatchedDirectory(base.toPath(), "", new String[1], 0), found);
+        SortedSet<String> current = new TreeSet<String>(found);
+        List<String> added = new ArrayList<String>();
+        List<String> deleted = new ArrayList<String>();
+        synchronized (matches) {
+            for (String filePath : current) {
+                if (!matches.contains(filePath)) {
+                    added.add(filePath);
+                }
+            }
+            for (String filePath : matches) {
+                if (!current.contains(filePath)) {
+                    deleted.add(filePath);
+                }
+            }
+            matches.clear();
+            matches.addAll(current);
+        }
+        stale = false;
+        for (String filePath : deleted) {
+            publish(filePath, ENTRY_DELETE);
+        }
+        for (String filePath : added) {
+            publish(filePath, ENTRY_CREATE);
+        }
+        return added.size() + deleted.size();
+    }
+
+    /**
+     * Notify the listeners of a change of the given kind to the given
+     * relative path.
+     *
+     * @param filePath
+     *            The relative path.
+     * @param kind
+     *            The kind of change.
+     * @return One, the number of changes published.
+     */
+    private int publish(String filePath, WatchEvent.Kind<Path> kind) {
+        for (LiveFindListener listener : listeners) {
+            try {
+                if (kind == ENTRY_CREATE) {
+                    listener.added(base, filePath);
+                } else if (kind == ENTRY_MODIFY) {
+                    listener.modified(base, filePath);
+                } else {
+                    listener.deleted(base, filePath);
+                }
+            } catch (RuntimeException e) {
+                failed(e);
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Notify the listeners of the given failure, ignoring any exception
+     * thrown by a listener.
+     *
+     * @param failure
+     *            The failure.
+     */
+    private void failed(RuntimeException failure) {
+        for (LiveFindListener listener : listeners) {
+            try {
+                listener.failed(base, failure);
+            } catch (RuntimeException e) {
+            }
+        }
+    }
+
+    /**
+     * Start a daemon thread that processes file system events until this live
+     * find is closed. A failure to process events is reported to the
+     * listeners and the thread continues, trying again to search the
+     * directory at intervals if the search after lost events failed.
+     *
+     * @return This <code>LiveFind</code>.
+     */
+    public synchronized LiveFind start() {
+        if (thread == null) {
+            thread = new Thread("LiveFind " + base) {
+                public void run() {
+                    try {
+                        for (;;) {
+                            try {
+                                boolean retry;
+                                synchronized (LiveFind.this) {
+                                    retry = stale;
+                                }
+                                if (retry) {
+                                    process(RETRY_INTERVAL, TimeUnit.SECONDS);
+                                } else {
+                                    process(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                                }
+                            } catch (ClosedWatchServiceException e) {
+                                throw e;
+                            } catch (RuntimeException e) {
+                                failed(e);
+                            }
+                        }
+                    } catch (ClosedWatchServiceException e) {
+                    } catch (InterruptedException e) {
+                    }
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return this;
+    }
+
+    /**
+     * Stop watching the directory and stop the event processing thread if
+     * it was started.
+     */
+    public void close() {
+        try {
+            watcher.close();
+        } catch (IOException e) {
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.goodworkalan.comfort.io;
+
+import java.io.File;
+
+/**
+ * Receives the changes to the set of files that match the conditions of a
+ * live find. The listener is invoked by the thread that processes file system
+ * events, one event at a time.
+ *
+ * @author Alan Gutierrez
+ */
+public interface LiveFindListener {
+    /**
+     * Notify the listener that the file at the given relative path now
+     * matches the conditions of the find.
+     *
+     * @param base
+     *            The base directory of the find.
+     * @param filePath
+     *            The relative path of the file.
+     */
+    public void added(File base, String filePath);
+
+    /**
+     * Notify the listener that the matching file at the given relative path
+     * has been modified.
+     *
+     * @param base
+     *            The base directory of the find.
+     * @param filePath
+     *            The relative path of the file.
+     */
+    public void modified(File base, String filePath);
+
+    /**
+     * Notify the listener that the file at the given relative path no longer
+     * matches the conditions of the find, because it was deleted or because
+     * it no longer passes a filter.
+     *
+     * @param base
+     *            The base directory of the find.
+     * @param filePath
+     *            The relative path of the file.
+     */
+    public void deleted(File base, String filePath);
+
+    /**
+     * Notify the listener of a failure that did not stop the live find, such
+     * as a new directory that could not be read, an exception thrown by a
+     * listener, or a failure of the event processing thread to search the
+     * directory again after events were lost. Exceptions thrown by this
+     * method are ignored.
+     *
+     * @param base
+     *            The base directory of the find.
+     * @param failure
+     *            The failure.
+     */
+    public void failed(File base, RuntimeException failure);
+}
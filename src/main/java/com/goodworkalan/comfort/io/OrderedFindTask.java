@@ -0,0 +1,121 @@
+package com.goodworkalan.comfort.io;
+
+import static com.goodworkalan.comfort.io.ComfortIOException.READ_FAILURE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A fork/join task that searches a directory for files that match the
+ * conditions of a find, forking a task for each subdirectory. The matching
+ * files are returned in the same order as a search by a single thread.
+ *
+ * @author Alan Gutierrez
+ */
+class OrderedFindTask extends RecursiveTask<List<String>> {
+    /** The serial version id. */
+    private static final long serialVersionUID = 1L;
+
+    /** The find conditions. */
+    private final Find find;
+
+    /** The base directory of the find. */
+    private final File base;
+
+    /** The directory to search. */
+    private final Path dir;
+
+    /** The relative path of the directory followed by a separator. */
+    private final String directory;
+
+    /** The parts of the directory path with room for a file name. */
+    private final String[] parts;
+
+    /** The number of parts in the directory path. */
+    private final int length;
+
+    /**
+     * Create a task to search the given directory.
+     * 
+     * @param find
+     *            The find conditions.
+     * @param base
+     *            The base directory of the find.
+     * @param dir
+     *            The directory to search.
+     * @param directory
+     *            The relative path of the directory followed by a separator,
+     *            or the empty string for the base directory.
+     * @param parts
+     *            The parts of the directory path with room for one more part.
+     * @param length
+     *            The number of parts in the directory path.
+     */
+    public OrderedFindTask(Find find, File base, Path dir, String directory, String[] parts, int length) {
+        this.find = find;
+        this.base = base;
+        this.dir = dir;
+        this.directory = directory;
+        this.parts = parts;
+        this.length = length;
+    }
+
+    /**
+     * Search the directory, forking a task for each subdirectory, then join
+     * the subdirectory tasks in directory order.
+     * 
+     * @return A list of the matching files in search order.
+     */
+    @Override
+    protected List<String> compute() {
+        List<String> relatives = new ArrayList<String>();
+        List<Boolean> matched = new ArrayList<Boolean>();
+        List<OrderedFindTask> subtasks = new ArrayList<OrderedFindTask>();
+        try {
+            DirectoryStream<Path> stream = java.nio.file.Files.newDirectoryStream(dir);
+            try {
+                for (Path path : stream) {
+                    BasicFileAttributes attributes = Find.attributes(path);
+                    if (attributes == null) {
+                        continue;
+                    }
+                    String name = path.getFileName().toString();
+                    String relative = directory + name;
+                    parts[length] = name;
+                    OrderedFindTask subtask = null;
+                    if (attributes.isDirectory() && find.descend(base, parts, length + 1)) {
+                        subtask = new OrderedFindTask(find, base, path, relative + File.separator, Arrays.copyOf(parts, length + 2), length + 1);
+                        subtask.fork();
+                    }
+                    relatives.add(relative);
+                    matched.add(find.accept(base, relative, parts, length + 1, attributes));
+                    subtasks.add(subtask);
+                }
+            } finally {
+                stream.close();
+            }
+        } catch (DirectoryIteratorException e) {
+            throw new ComfortIOException(READ_FAILURE, e.getCause(), dir);
+        } catch (IOException e) {
+            throw new ComfortIOException(READ_FAILURE, e, dir);
+        }
+        List<String> matches = new ArrayList<String>();
+        for (int i = 0, stop = relatives.size(); i < stop; i++) {
+            if (matched.get(i)) {
+                matches.add(relatives.get(i));
+            }
+            if (subtasks.get(i) != null) {
+                matches.addAll(subtasks.get(i).join());
+            }
+        }
+        return matches;
+    }
+}
@@ -39,85 +39,4 @@ abstract class Part {
     public boolean multiple() {
         return false;
     }
-
-    /**
-     * Descend the path matching the object at the given index against the given
-     * array of the given length against the given array of matches starting at
-     * the given match offset. The length parameter must be provided as a
-     * separate parameter since the array may be either an array of strings or a
-     * string. This method will recursively call itself while advancing the
-     * indexes while the matches match the parts.
-     * 
-     * @param parts
-     *            An array of parts to match.
-     * @param length
-     *            The length of the array of parts to match.
-     * @param offset
-     *            An offset into the array of parts to match.
-     * @param matches
-     *            An array of matches.
-     * @param matchIndex
-     *            The start index for the match array.
-     * @return True if the parts are matched by the given matches.
-     */
-    public static boolean descend(Object parts, int length, int offset, Part[] matches, int matchIndex) {
-        if (matches[matchIndex].multiple()) {
-            int partsLength = length - offset;
-            int matchesLength = matches.length - matchIndex;
-            for (int i = matchIndex; i < matches.length; i++) {
-                if (matches[i].multiple()) {
-                    matchesLength--;
-                }
-            }
-            for (int repeat = 0; repeat < (partsLength - matchesLength) + 2; repeat++) {
-                if (match(parts, length, offset, matches, matchIndex, repeat)) {
-                    return true;
-                }
-            }
-            return false;
-        }
-        return match(parts, length, offset, matches, matchIndex, 1);
-    }
-
-    /**
-     * Match the object at the given offset into the given array of the given
-     * length against the match at the given match offset into the given match
-     * array for the given number of repetitions.
-     * 
-     * @param parts
-     *            An array of parts to match.
-     * @param length
-     *            The length of the array of parts to match.
-     * @param partIndex
-     *            An offset into the array of parts to match.
-     * @param matches
-     *            An array of matches.
-     * @param matchIndex
-     *            An offset into the array of matches.
-     * @param repeat
-     *            The number of times to repeat the match.
-     * @return True if the array parts match the matches for the given number of
-     *         repetitions.
-     */
-    private static boolean match(Object parts, int length, int partIndex, Part[] matches, int matchIndex, int repeat) {
-        boolean matched = true;
-        for (int i = 0; matched && i < repeat; i++) {
-            if (!matches[matchIndex].match(parts, partIndex + i)) {
-                matched = false;
-            }
-        }
-        if (matched) {
-            if (matchIndex + 1 == matches.length) {
-                if (partIndex + repeat == length) {
-                    return true;
-                }
-                return false;
-            } else if (partIndex + repeat == length) {
-                return false;
-            }
-            return descend(parts, length, partIndex + repeat, matches, matchIndex + 1);
-        }
-        return false;
-    }
-
 }
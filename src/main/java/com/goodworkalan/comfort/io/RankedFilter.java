@@ -0,0 +1,87 @@
+package com.goodworkalan.comfort.io;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A find filter with its cost, its expected selectivity, and the number of
+ * files it has tested and rejected, used by find to order its filters so
+ * that the filters with the lowest cost for each file rejected are
+ * evaluated first.
+ *
+ * @author Alan Gutierrez
+ */
+class RankedFilter {
+    /** The default cost of a filter that is given only the file path. */
+    final static double PATH_FILTER_COST = 10;
+
+    /** The default selectivity of a filter. */
+    final static double DEFAULT_SELECTIVITY = 0.5;
+
+    /** The smallest rejection rate, so that rank is always finite. */
+    private final static double MINIMUM_REJECTION = 0.001;
+
+    /** The filter. */
+    public final FindFilter filter;
+
+    /** The relative cost of testing a file. */
+    private final double cost;
+
+    /** The expected fraction of files accepted. */
+    private final double selectivity;
+
+    /** The number of files tested. */
+    private final AtomicLong tested = new AtomicLong();
+
+    /** The number of files rejected. */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Create a ranked filter for the given filter, using the cost and
+     * selectivity declared by the filter or the defaults for its type.
+     *
+     * @param filter
+     *            The filter.
+     */
+    public RankedFilter(FindFilter filter) {
+        this.filter = filter;
+        if (filter instanceof FindFilterCost) {
+            this.cost = ((FindFilterCost) filter).getCost();
+            this.selectivity = ((FindFilterCost) filter).getSelectivity();
+        } else {
+            this.cost = filter instanceof GlobFindFilter || filter instanceof FindAttributeFilter ? 1 : PATH_FILTER_COST;
+            this.selectivity = DEFAULT_SELECTIVITY;
+        }
+    }
+
+    /**
+     * Record the outcome of testing a file.
+     *
+     * @param accepted
+     *            Whether the filter accepted the file.
+     */
+    public void observe(boolean accepted) {
+        tested.incrementAndGet();
+        if (!accepted) {
+            rejected.incrementAndGet();
+        }
+    }
+
+    /**
+     * Compute the rank of the filter, the cost of the filter divided by the
+     * fraction of files it rejects. If observed is true and the filter has
+     * tested files, the observed rejection rate is used in place of the
+     * declared selectivity.
+     *
+     * @param observed
+     *            Whether to use the observed rejection rate.
+     * @return The rank of the filter.
+     */
+    public double rank(boolean observed) {
+        double rejection = 1 - selectivity;
+        long count = tested.get();
+        if (observed && count != 0) {
+            rejection = (double) rejected.get() / count;
+        }
+        return cost / Math.max(rejection, MINIMUM_REJECTION);
+    }
+}
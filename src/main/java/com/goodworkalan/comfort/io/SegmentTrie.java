@@ -0,0 +1,114 @@
+package com.goodworkalan.comfort.io;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A trie of file path parts that matches a set of literal globs, globs made
+ * up entirely of file names, in time proportional to the depth of the file
+ * path, no matter how many literal globs are in the set.
+ *
+ * @author Alan Gutierrez
+ */
+final class SegmentTrie {
+    /** An empty array of glob indexes. */
+    private final static int[] NONE = new int[0];
+
+    /** The child nodes keyed by file path part. */
+    private final Map<String, SegmentTrie> children = new HashMap<String, SegmentTrie>();
+
+    /** The indexes of the literal globs that end at this node. */
+    private int[] globs = NONE;
+
+    /**
+     * Determine whether the given glob matches is a literal glob that can be
+     * added to a trie.
+     * 
+     * @param matches
+     *            The glob matches.
+     * @return True if every match is a file name.
+     */
+    static boolean literal(Part[] matches) {
+        for (Part match : matches) {
+            if (!(match instanceof FileName)) {
+                return false;
+            }
+        }
+        return matches.length != 0;
+    }
+
+    /**
+     * Add the literal glob with the given matches and the given index to the
+     * trie.
+     * 
+     * @param matches
+     *            The glob matches, all of which are file names.
+     * @param index
+     *            The index of the glob.
+     */
+    public void add(Part[] matches, int index) {
+        SegmentTrie node = this;
+        for (Part match : matches) {
+            String fileName = ((FileName) match).getFileName();
+            SegmentTrie child = node.children.get(fileName);
+            if (child == null) {
+                child = new SegmentTrie();
+                node.children.put(fileName, child);
+            }
+            node = child;
+        }
+        node.globs = Arrays.copyOf(node.globs, node.globs.length + 1);
+        node.globs[node.globs.length - 1] = index;
+    }
+
+    /**
+     * Find the node for the file path given as the given array of file path
+     * parts of the given length.
+     * 
+     * @param parts
+     *            An array of file path parts.
+     * @param length
+     *            The number of parts in the file path.
+     * @return The node or null if no literal glob starts with the file path.
+     */
+    private SegmentTrie find(String[] parts, int length) {
+        SegmentTrie node = this;
+        for (int i = 0; node != null && i < length; i++) {
+            node = node.children.get(parts[i]);
+        }
+        return node;
+    }
+
+    /**
+     * Get the indexes of the literal globs that match the file path given as
+     * the given array of file path parts of the given length.
+     * 
+     * @param parts
+     *            An array of file path parts.
+     * @param length
+     *            The number of parts in the file path.
+     * @return The indexes of the matching globs, an empty array if none
+     *         match.
+     */
+    public int[] match(String[] parts, int length) {
+        SegmentTrie node = find(parts, length);
+        return node == null ? NONE : node.globs;
+    }
+
+    /**
+     * Determine whether any literal glob matches a descendant of the
+     * directory given as the given array of file path parts of the given
+     * length.
+     * 
+     * @param parts
+     *            An array of file path parts.
+     * @param length
+     *            The number of parts in the directory path.
+     * @return True if a literal glob matches a descendant of the directory.
+     */
+    public boolean descendable(String[] parts, int length) {
+        SegmentTrie node = find(parts, length);
+        return node != null && !node.children.isEmpty();
+    }
+}
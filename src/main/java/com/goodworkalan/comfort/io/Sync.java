@@ -0,0 +1,290 @@
+package com.goodworkalan.comfort.io;
+
+import static com.goodworkalan.comfort.io.ComfortIOException.MKDIR_FAILURE;
+import static com.goodworkalan.comfort.io.ComfortIOException.READ_FAILURE;
+import static com.goodworkalan.comfort.io.ComfortIOException.WRITE_FAILURE;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An incremental copy of the files selected by a find from a source directory
+ * to a destination directory that copies only the files that differ.
+ * <p>
+ * A destination file is up to date if it has the same size and modification
+ * time as the source file. Copied files are given the modification time of
+ * their source file, so that a subsequent sync will find them up to date. If a
+ * digest algorithm is given, files of the same size with different
+ * modification times are compared by content digest, and files with equal
+ * digests are not copied, but are given the modification time of the source.
+ * <p>
+ * A destination file in the place of a source directory is replaced by the
+ * directory, and an empty destination directory in the place of a source file
+ * is replaced by the file. A destination directory that is not empty is not
+ * replaced and is reported as a failure. Orphans are deleted before the files
+ * are copied, so that a directory emptied of its orphans can be replaced.
+ *
+ * @author Alan Gutierrez
+ */
+public class Sync {
+    /** The find that selects the files to synchronize. */
+    private final Find find;
+
+    /** The message digest algorithm or null to compare only size and time. */
+    private String algorithm;
+
+    /** Whether to delete destination files that are not in the source. */
+    private boolean deleteOrphans;
+
+    /**
+     * Create a sync of the files selected by the given find.
+     *
+     * @param find
+     *            The find that selects the files to synchronize.
+     */
+    public Sync(Find find) {
+        this.find = find;
+    }
+
+    /**
+     * Compare files of the same size but different modification times using a
+     * content digest created by the given message digest algorithm.
+     *
+     * @param algorithm
+     *            The name of a message digest algorithm, such as SHA-1.
+     * @return This <code>Sync</code> object in order to continue specifying
+     *         options.
+     * @exception IllegalArgumentException
+     *                If the message digest algorithm is not available.
+     */
+    public Sync digest(String algorithm) {
+        try {
+            MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(e);
+        }
+        this.algorithm = algorithm;
+        return this;
+    }
+
+    /**
+     * Delete the files in the destination directory that are selected by the
+     * find but are not found in the source directory. An orphan directory is
+     * deleted after its orphans, and is left in place if it still holds
+     * entries that the find did not select.
+     *
+     * @return This <code>Sync</code> object in order to continue specifying
+     *         options.
+     */
+    public Sync deleteOrphans() {
+        this.deleteOrphans = true;
+        return this;
+    }
+
+    /**
+     * Synchronize the destination directory with the source directory. A
+     * file that cannot be synchronized does not stop the sync. The failures
+     * are collected and thrown once the remaining files have been
+     * synchronized.
+     *
+     * @param source
+     *            The source directory.
+     * @param destination
+     *            The destination directory.
+     * @return A summary of the changes made to the destination.
+     * @exception SyncException
+     *                If any of the files cannot be synchronized, with the
+     *                report of the changes that were made.
+     * @exception ComfortIOException
+     *                If the source cannot be searched or the destination
+     *                cannot be created.
+     */
+    public SyncReport sync(File source, File destination) {
+        SyncReport report = new SyncReport();
+        List<ComfortIOException> failures = new ArrayList<ComfortIOException>();
+        Set<String> filePaths = find.find(source);
+        int total = filePaths.size();
+        mkdirs(destination);
+        if (deleteOrphans) {
+            List<String> orphans = new ArrayList<String>(find.find(destination));
+            for (int i = orphans.size() - 1; i >= 0; i--) {
+                String filePath = orphans.get(i);
+                File orphan = new File(destination, filePath);
+                if (!filePaths.contains(filePath) && orphan.exists()) {
+                    total++;
+                    if (!orphan.delete()) {
+                        String[] entries = orphan.list();
+                        if (entries == null || entries.length == 0) {
+                            failures.add(new ComfortIOException(WRITE_FAILURE, null, orphan));
+                        }
+                        continue;
+                    }
+                    report.deleted(filePath);
+                }
+            }
+        }
+        for (String filePath : filePaths) {
+            File from = new File(source, filePath);
+            File to = new File(destination, filePath);
+            try {
+                if (from.isDirectory()) {
+                    if (to.exists() && !to.isDirectory()) {
+                        replace(to);
+                        report.updated(filePath);
+                    }
+                    mkdirs(to);
+                } else if (to.isDirectory()) {
+                    replace(to);
+                    report.copied(copy(from, to));
+                    report.updated(filePath);
+                } else if (!to.exists()) {
+                    mkdirs(to.getParentFile());
+                    report.copied(copy(from, to));
+                    report.added(filePath);
+                } else if (differs(from, to)) {
+                    report.copied(copy(from, to));
+                    report.updated(filePath);
+                } else {
+                    report.unchanged();
+                }
+            } catch (ComfortIOException e) {
+                failures.add(e);
+            }
+        }
+        if (!failures.isEmpty()) {
+            SyncException e = new SyncException(report, failures.size(), total, source, destination);
+            for (Throwable failure : failures) {
+                e.addSuppressed(failure);
+            }
+            throw e;
+        }
+        return report;
+    }
+
+    /**
+     * Delete a destination file or empty directory that is in the way of a
+     * source entry of a different type.
+     *
+     * @param to
+     *            The destination file or directory.
+     * @exception ComfortIOException
+     *                If the destination cannot be deleted, or is a directory
+     *                that is not empty.
+     */
+    private static void replace(File to) {
+        if (!to.delete()) {
+            throw new ComfortIOException(WRITE_FAILURE, null, to);
+        }
+    }
+
+    /**
+     * Create the given directory and any missing parent directories.
+     *
+     * @param directory
+     *            The directory.
+     * @exception ComfortIOException
+     *                If the directory cannot be created.
+     */
+    private static void mkdirs(File directory) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new ComfortIOException(MKDIR_FAILURE, null, directory);
+        }
+    }
+
+    /**
+     * Copy the source file to the destination file and give the destination
+     * file the modification time of the source file.
+     *
+     * @param from
+     *            The source file.
+     * @param to
+     *            The destination file.
+     * @return The number of bytes copied.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    private static long copy(File from, File to) {
+        long bytes = Files.copy(from, to, Files.DEFAULT_CHUNK_SIZE, false).getBytes();
+        if (!to.setLastModified(from.lastModified())) {
+            throw new ComfortIOException(WRITE_FAILURE, null, to);
+        }
+        return bytes;
+    }
+
+    /**
+     * Determine whether the destination file differs from the source file. If
+     * the files have the same size but different modification times and a
+     * digest algorithm was given, the files are compared by digest, and if
+     * they are the same, the destination is given the modification time of
+     * the source.
+     *
+     * @param from
+     *            The source file.
+     * @param to
+     *            The destination file.
+     * @return True if the destination file needs to be copied.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    private boolean differs(File from, File to) {
+        if (from.length() != to.length()) {
+            return true;
+        }
+        if (from.lastModified() == to.lastModified()) {
+            return false;
+        }
+        if (algorithm == null) {
+            return true;
+        }
+        if (!Arrays.equals(digest(from), digest(to))) {
+            return true;
+        }
+        if (!to.setLastModified(from.lastModified())) {
+            throw new ComfortIOException(WRITE_FAILURE, null, to);
+        }
+        return false;
+    }
+
+    /**
+     * Create a digest of the contents of the given file.
+     *
+     * @param file
+     *            The file.
+     * @return The digest of the file contents.
+     * @exception ComfortIOException
+     *                If an I/O error occurs.
+     */
+    private byte[] digest(File file) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try {
+            FileChannel channel = new FileInputStream(file).getChannel();
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new ComfortIOException(READ_FAILURE, e, file);
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,40 @@
+package com.goodworkalan.comfort.io;
+
+/**
+ * An exception thrown by a {@link Sync} that could not synchronize some of
+ * the files in a directory tree, carrying the report of the changes that were
+ * made to the destination. The failures are suppressed by the exception.
+ *
+ * @author Alan Gutierrez
+ */
+public class SyncException extends ComfortIOException {
+    /** The serial version id. */
+    private static final long serialVersionUID = 1L;
+
+    /** The changes made to the destination. */
+    private final SyncReport report;
+
+    /**
+     * Create a sync exception with the given report and detail message
+     * format arguments.
+     *
+     * @param report
+     *            The changes made to the destination.
+     * @param arguments
+     *            The detail message format arguments.
+     */
+    public SyncException(SyncReport report, Object...arguments) {
+        super(SYNC_FAILURE, null, arguments);
+        this.report = report;
+    }
+
+    /**
+     * Get the report of the changes that were made to the destination before
+     * the sync failed.
+     *
+     * @return The changes made to the destination.
+     */
+    public SyncReport getReport() {
+        return report;
+    }
+}
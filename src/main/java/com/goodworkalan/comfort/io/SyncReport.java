@@ -0,0 +1,132 @@
+package com.goodworkalan.comfort.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A summary of the changes made to a destination directory by a
+ * {@link Sync}.
+ *
+ * @author Alan Gutierrez
+ */
+public class SyncReport {
+    /** The relative paths of the files copied that were not in the destination. */
+    private final List<String> added = new ArrayList<String>();
+
+    /** The relative paths of the files copied over files that differed. */
+    private final List<String> updated = new ArrayList<String>();
+
+    /** The relative paths of the orphans deleted from the destination. */
+    private final List<String> deleted = new ArrayList<String>();
+
+    /** The number of files that were already up to date. */
+    private int unchanged;
+
+    /** The number of bytes copied. */
+    private long bytes;
+
+    /**
+     * Get the relative paths of the files copied that were not in the
+     * destination.
+     *
+     * @return The added files.
+     */
+    public List<String> getAdded() {
+        return Collections.unmodifiableList(added);
+    }
+
+    /**
+     * Get the relative paths of the files copied over destination files that
+     * differed from the source files.
+     *
+     * @return The updated files.
+     */
+    public List<String> getUpdated() {
+        return Collections.unmodifiableList(updated);
+    }
+
+    /**
+     * Get the relative paths of the files and directories deleted from the
+     * destination because they were not in the source.
+     *
+     * @return The deleted files.
+     */
+    public List<String> getDeleted() {
+        return Collections.unmodifiableList(deleted);
+    }
+
+    /**
+     * Get the number of files that were already up to date.
+     *
+     * @return The number of unchanged files.
+     */
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    /**
+     * Get the number of bytes copied.
+     *
+     * @return The number of bytes copied.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Record a file copied that was not in the destination.
+     *
+     * @param filePath
+     *            The relative path of the file.
+     */
+    void added(String filePath) {
+        added.add(filePath);
+    }
+
+    /**
+     * Record a file copied over a destination file that differed.
+     *
+     * @param filePath
+     *            The relative path of the file.
+     */
+    void updated(String filePath) {
+        updated.add(filePath);
+    }
+
+    /**
+     * Record an orphan deleted from the destination.
+     *
+     * @param filePath
+     *            The relative path of the file.
+     */
+    void deleted(String filePath) {
+        deleted.add(filePath);
+    }
+
+    /**
+     * Record a file that was already up to date.
+     */
+    void unchanged() {
+        unchanged++;
+    }
+
+    /**
+     * Record the given number of bytes copied.
+     *
+     * @param count
+     *            The number of bytes copied.
+     */
+    void copied(long count) {
+        bytes += count;
+    }
+
+    /**
+     * Return true if the sync changed nothing in the destination.
+     *
+     * @return True if nothing was added, updated or deleted.
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && deleted.isEmpty();
+    }
+}
@@ -0,0 +1,55 @@
+package com.goodworkalan.comfort.io;
+
+/**
+ * The number of bytes moved by a file transfer and the time it took, from
+ * which the throughput of the transfer can be calculated.
+ *
+ * @author Alan Gutierrez
+ */
+public class Transfer {
+    /** The number of bytes transferred. */
+    private final long bytes;
+
+    /** The elapsed time of the transfer in nanoseconds. */
+    private final long nanos;
+
+    /**
+     * Create a transfer record.
+     *
+     * @param bytes
+     *            The number of bytes transferred.
+     * @param nanos
+     *            The elapsed time of the transfer in nanoseconds.
+     */
+    public Transfer(long bytes, long nanos) {
+        this.bytes = bytes;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Get the number of bytes transferred.
+     *
+     * @return The number of bytes transferred.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get the elapsed time of the transfer in nanoseconds.
+     *
+     * @return The elapsed time in nanoseconds.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Get the throughput of the transfer in bytes per second.
+     *
+     * @return The throughput in bytes per second.
+     */
+    public double getBytesPerSecond() {
+        return nanos == 0 ? 0 : bytes * 1000000000.0 / nanos;
+    }
+}
@@ -0,0 +1,113 @@
+package com.goodworkalan.comfort.io;
+
+import static com.goodworkalan.comfort.io.ComfortIOException.WRITE_FAILURE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes files and directories in the background after renaming them out of
+ * the way. The deletions run on a shared fork/join pool of daemon threads
+ * that does not prevent the virtual machine from exiting, and a shutdown hook
+ * waits for pending deletions to finish when the virtual machine exits
+ * normally. The shutdown hook waits for a bounded time, so that a deletion
+ * that hangs, as on an unresponsive network file system, does not prevent
+ * the virtual machine from exiting. Trash that is not deleted in time is left
+ * behind.
+ *
+ * @author Alan Gutierrez
+ */
+final class Trash {
+    /** The number of seconds the shutdown hook waits for pending deletions. */
+    final static long SHUTDOWN_TIMEOUT = 30;
+
+    /** The pool of daemon threads that performs the deletions. */
+    private final static ForkJoinPool POOL = new ForkJoinPool();
+
+    /** The source of unique trash names. */
+    private final static Random RANDOM = new Random();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                POOL.shutdown();
+                try {
+                    POOL.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                }
+            }
+        });
+    }
+
+    /** Cannot be instantiated. */
+    private Trash() {
+    }
+
+    /**
+     * Rename the given file or directory to a hidden sibling trash name and
+     * delete the trash in the background.
+     * 
+     * @param file
+     *            The file or directory to delete.
+     * @return A future that returns the trash files that could not be
+     *         deleted.
+     * @exception ComfortIOException
+     *                If the file cannot be renamed.
+     */
+    public static Future<List<File>> delete(File file) {
+        final File trash = rename(file);
+        return POOL.submit(new Callable<List<File>>() {
+            public List<File> call() {
+                if (trash == null) {
+                    return Collections.emptyList();
+                }
+                return Files.unlink(trash, POOL);
+            }
+        });
+    }
+
+    /**
+     * Atomically rename the given file or directory to a new hidden sibling
+     * trash name.
+     * 
+     * @param file
+     *            The file or directory to rename.
+     * @return The trash file or null if the file does not exist.
+     * @exception ComfortIOException
+     *                If the file cannot be renamed.
+     */
+    private static File rename(File file) {
+        Path path = file.getAbsoluteFile().toPath();
+        for (;;) {
+            long id;
+            synchronized (RANDOM) {
+                id = RANDOM.nextLong() & Long.MAX_VALUE;
+            }
+            Path trash = path.resolveSibling("." + path.getFileName() + ".trash." + id);
+            if (java.nio.file.Files.exists(trash)) {
+                continue;
+            }
+            try {
+                java.nio.file.Files.move(path, trash, StandardCopyOption.ATOMIC_MOVE);
+                return trash.toFile();
+            } catch (NoSuchFileException e) {
+                return null;
+            } catch (FileAlreadyExistsException e) {
+                continue;
+            } catch (IOException e) {
+                throw new ComfortIOException(WRITE_FAILURE, e, file);
+            }
+        }
+    }
+}
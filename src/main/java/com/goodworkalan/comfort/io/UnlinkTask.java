@@ -0,0 +1,108 @@
+package com.goodworkalan.comfort.io;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A fork/join task that deletes the contents of a directory, forking a task
+ * for each subdirectory, and then deletes the directory itself. Symbolic links
+ * are deleted, never followed. A file that cannot be deleted, or whose
+ * attributes cannot be read, is added to a shared queue of failures and the
+ * task continues with the next file. A
+ * directory that cannot be listed is still removed if it is empty, and is
+ * reported once, as a directory that cannot be deleted, if it is not.
+ *
+ * @author Alan Gutierrez
+ */
+class UnlinkTask extends RecursiveAction {
+    /** The serial version id. */
+    private static final long serialVersionUID = 1L;
+
+    /** The directory to delete. */
+    private final Path dir;
+
+    /** The paths that could not be deleted. */
+    private final Queue<Path> failures;
+
+    /**
+     * Create a task to delete the given directory.
+     * 
+     * @param dir
+     *            The directory to delete.
+     * @param failures
+     *            The shared queue of paths that could not be deleted.
+     */
+    public UnlinkTask(Path dir, Queue<Path> failures) {
+        this.dir = dir;
+        this.failures = failures;
+    }
+
+    /**
+     * Delete the files in the directory while the subdirectory tasks run,
+     * then join the subdirectory tasks and delete the directory.
+     */
+    @Override
+    protected void compute() {
+        List<UnlinkTask> subtasks = new ArrayList<UnlinkTask>();
+        try {
+            DirectoryStream<Path> stream = java.nio.file.Files.newDirectoryStream(dir);
+            try {
+                for (Path path : stream) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = java.nio.file.Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (NoSuchFileException e) {
+                        continue;
+                    } catch (IOException e) {
+                        failures.add(path);
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        UnlinkTask subtask = new UnlinkTask(path, failures);
+                        subtask.fork();
+                        subtasks.add(subtask);
+                    } else {
+                        delete(path, failures);
+                    }
+                }
+            } finally {
+                stream.close();
+            }
+        } catch (DirectoryIteratorException e) {
+        } catch (IOException e) {
+        }
+        for (UnlinkTask subtask : subtasks) {
+            subtask.join();
+        }
+        delete(dir, failures);
+    }
+
+    /**
+     * Delete the given path, adding it to the given queue of failures if it
+     * exists and cannot be deleted.
+     * 
+     * @param path
+     *            The path to delete.
+     * @param failures
+     *            The queue of paths that could not be deleted.
+     * @return True if the path was deleted or did not exist.
+     */
+    static boolean delete(Path path, Queue<Path> failures) {
+        try {
+            java.nio.file.Files.deleteIfExists(path);
+            return true;
+        } catch (IOException e) {
+            failures.add(path);
+            return false;
+        }
+    }
+}
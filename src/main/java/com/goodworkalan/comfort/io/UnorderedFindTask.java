@@ -0,0 +1,116 @@
+package com.goodworkalan.comfort.io;
+
+import static com.goodworkalan.comfort.io.ComfortIOException.READ_FAILURE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A fork/join task that searches a directory for files that match the
+ * conditions of a find, forking a task for each subdirectory. The matching
+ * files are sent to a find listener as soon as they are found.
+ *
+ * @author Alan Gutierrez
+ */
+class UnorderedFindTask extends RecursiveAction {
+    /** The serial version id. */
+    private static final long serialVersionUID = 1L;
+
+    /** The find conditions. */
+    private final Find find;
+
+    /** The base directory of the find. */
+    private final File base;
+
+    /** The directory to search. */
+    private final Path dir;
+
+    /** The relative path of the directory followed by a separator. */
+    private final String directory;
+
+    /** The parts of the directory path with room for a file name. */
+    private final String[] parts;
+
+    /** The number of parts in the directory path. */
+    private final int length;
+
+    /** The listener that receives the matching files. */
+    private final FindListener listener;
+
+    /**
+     * Create a task to search the given directory.
+     * 
+     * @param find
+     *            The find conditions.
+     * @param base
+     *            The base directory of the find.
+     * @param dir
+     *            The directory to search.
+     * @param directory
+     *            The relative path of the directory followed by a separator,
+     *            or the empty string for the base directory.
+     * @param parts
+     *            The parts of the directory path with room for one more part.
+     * @param length
+     *            The number of parts in the directory path.
+     * @param listener
+     *            The listener that receives the matching files.
+     */
+    public UnorderedFindTask(Find find, File base, Path dir, String directory, String[] parts, int length, FindListener listener) {
+        this.find = find;
+        this.base = base;
+        this.dir = dir;
+        this.directory = directory;
+        this.parts = parts;
+        this.length = length;
+        this.listener = listener;
+    }
+
+    /**
+     * Search the directory, notifying the listener of matching files and
+     * forking a task for each subdirectory.
+     */
+    @Override
+    protected void compute() {
+        List<UnorderedFindTask> subtasks = new ArrayList<UnorderedFindTask>();
+        try {
+            DirectoryStream<Path> stream = java.nio.file.Files.newDirectoryStream(dir);
+            try {
+                for (Path path : stream) {
+                    BasicFileAttributes attributes = Find.attributes(path);
+                    if (attributes == null) {
+                        continue;
+                    }
+                    String name = path.getFileName().toString();
+                    String relative = directory + name;
+                    parts[length] = name;
+                    if (attributes.isDirectory() && find.descend(base, parts, length + 1)) {
+                        UnorderedFindTask subtask = new UnorderedFindTask(find, base, path, relative + File.separator, Arrays.copyOf(parts, length + 2), length + 1, listener);
+                        subtask.fork();
+                        subtasks.add(subtask);
+                    }
+                    if (find.accept(base, relative, parts, length + 1, attributes)) {
+                        listener.found(base, relative);
+                    }
+                }
+            } finally {
+                stream.close();
+            }
+        } catch (DirectoryIteratorException e) {
+            throw new ComfortIOException(READ_FAILURE, e.getCause(), dir);
+        } catch (IOException e) {
+            throw new ComfortIOException(READ_FAILURE, e, dir);
+        }
+        for (UnorderedFindTask subtask : subtasks) {
+            subtask.join();
+        }
+    }
+}
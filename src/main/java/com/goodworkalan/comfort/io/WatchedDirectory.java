@@ -0,0 +1,44 @@
+package com.goodworkalan.comfort.io;
+
+import java.nio.file.Path;
+
+/**
+ * A directory registered with a watch service by a live find, along with the
+ * relative path and the file path parts that the find conditions need in
+ * order to test its entries.
+ *
+ * @author Alan Gutierrez
+ */
+final class WatchedDirectory {
+    /** The directory. */
+    public final Path dir;
+
+    /** The relative path of the directory followed by a separator. */
+    public final String directory;
+
+    /** The parts of the directory path with room for a file name. */
+    public final String[] parts;
+
+    /** The number of parts in the directory path. */
+    public final int length;
+
+    /**
+     * Create a watched directory.
+     * 
+     * @param dir
+     *            The directory.
+     * @param directory
+     *            The relative path of the directory followed by a separator,
+     *            or the empty string for the base directory.
+     * @param parts
+     *            The parts of the directory path with room for one more part.
+     * @param length
+     *            The number of parts in the directory path.
+     */
+    public WatchedDirectory(Path dir, String directory, String[] parts, int length) {
+        this.dir = dir;
+        this.directory = directory;
+        this.parts = parts;
+        this.length = length;
+    }
+}
@@ -11,12 +11,26 @@ import static org.testng.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.testng.annotations.Test;
 
@@ -53,6 +67,96 @@ public class FilesTest {
         Files.unlink(new File("target/junk"));
     }
     
+    /** Test parallel recursive deletion. */
+    @Test
+    public void unlinkParallel() throws IOException {
+        File junk = new File("target/unlink");
+        Files.unlink(junk);
+        File outside = new File("target/unlink-outside");
+        outside.mkdirs();
+        Files.touch(new File(outside, "keep.txt"));
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 5; j++) {
+                File directory = new File(junk, i + File.separator + j);
+                directory.mkdirs();
+                Files.touch(new File(directory, "file.txt"));
+            }
+        }
+        java.nio.file.Files.createSymbolicLink(new File(junk, "link").toPath(), outside.getAbsoluteFile().toPath());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        assertTrue(Files.unlink(junk, pool).isEmpty());
+        assertFalse(junk.exists());
+        assertTrue(new File(outside, "keep.txt").exists());
+        assertTrue(Files.unlink(junk, pool).isEmpty());
+        assertTrue(Files.unlink(outside, pool).isEmpty());
+        assertFalse(outside.exists());
+        pool.shutdown();
+    }
+
+    /**
+     * Test that parallel deletion reports a failure. A directory cannot be
+     * removed through a path that ends with a dot, regardless of permissions,
+     * but its contents can be deleted.
+     */
+    @Test
+    public void unlinkParallelFailure() {
+        File junk = new File("target/unlink");
+        Files.unlink(junk);
+        new File(junk, "a/b").mkdirs();
+        Files.touch(new File(junk, "a/b/file.txt"));
+        Files.touch(new File(junk, "file.txt"));
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            File dot = new File(junk, ".");
+            assertEquals(Files.unlink(dot, pool), Collections.singletonList(dot));
+            assertTrue(junk.isDirectory());
+            assertEquals(junk.list().length, 0);
+        } finally {
+            pool.shutdown();
+            Files.unlink(junk);
+        }
+    }
+
+    /** Test that a directory that cannot be listed is reported once. */
+    @Test
+    public void unlinkParallelUnlisted() {
+        File junk = new File("target/unlink");
+        Files.unlink(junk);
+        junk.mkdirs();
+        File file = new File(junk, "file.txt");
+        Files.touch(file);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            Queue<Path> failures = new ConcurrentLinkedQueue<Path>();
+            Path unlisted = new File(file, ".").toPath();
+            pool.invoke(new UnlinkTask(unlisted, failures));
+            assertEquals(new ArrayList<Path>(failures), Collections.singletonList(unlisted));
+            failures.clear();
+            pool.invoke(new UnlinkTask(file.toPath(), failures));
+            assertTrue(failures.isEmpty());
+            assertFalse(file.exists());
+        } finally {
+            pool.shutdown();
+            Files.unlink(junk);
+        }
+    }
+
+    /** Test background deletion. */
+    @Test
+    public void unlinkLater() throws Exception {
+        File junk = new File("target/later/junk");
+        Files.unlink(junk.getParentFile());
+        new File(junk, "a/b").mkdirs();
+        Files.touch(new File(junk, "a/b/file.txt"));
+        Future<List<File>> future = Files.unlinkLater(junk);
+        assertFalse(junk.exists());
+        assertTrue(junk.mkdirs());
+        assertTrue(future.get().isEmpty());
+        assertEquals(junk.getParentFile().list().length, 1);
+        assertTrue(Files.unlinkLater(new File("target/later/missing")).get().isEmpty());
+        Files.unlink(junk.getParentFile());
+    }
+
     /** Test a file copy. */
     @Test
     public void copy() {
@@ -65,6 +169,114 @@ public class FilesTest {
         junk.delete();
     }
     
+    /** Test a file copy that takes many chunks. */
+    @Test
+    public void copyChunked() throws IOException {
+        File junk = new File("target/junk");
+        junk.mkdirs();
+        File source = new File(junk, "chunked.bin");
+        File copy = new File(junk, "chunked.copy");
+        byte[] bytes = new byte[100000];
+        new Random(0).nextBytes(bytes);
+        FileOutputStream out = new FileOutputStream(source);
+        out.write(bytes);
+        out.close();
+        Transfer transfer = Files.copy(source, copy, 4096, false);
+        assertEquals(transfer.getBytes(), bytes.length);
+        assertTrue(transfer.getBytesPerSecond() >= 0);
+        assertTrue(Arrays.equals(java.nio.file.Files.readAllBytes(copy.toPath()), bytes));
+        Files.unlink(junk);
+    }
+
+    /** Test a sparse file copy. */
+    @Test
+    public void copySparse() throws IOException {
+        File junk = new File("target/junk");
+        junk.mkdirs();
+        File source = new File(junk, "sparse.bin");
+        File copy = new File(junk, "sparse.copy");
+        byte[] bytes = new byte[4096 * 5 + 7];
+        bytes[4096 + 3] = 1;
+        bytes[4096 * 3] = 2;
+        FileOutputStream out = new FileOutputStream(source);
+        out.write(bytes);
+        out.close();
+        Transfer transfer = Files.copy(source, copy, 4096, true);
+        assertEquals(transfer.getBytes(), bytes.length);
+        assertTrue(Arrays.equals(java.nio.file.Files.readAllBytes(copy.toPath()), bytes));
+        Files.copy(source, copy, 4096, true);
+        assertEquals(copy.length(), (long) bytes.length);
+        Files.unlink(junk);
+    }
+
+    /** Test a directory tree copy. */
+    @Test
+    public void copyTree() {
+        File destination = new File("target/tree");
+        Files.unlink(destination);
+        final AtomicInteger progress = new AtomicInteger();
+        Find find = new Find().include("**/*.java");
+        Transfer transfer = Files.copyTree(new File("src/test/java"), destination, find, 2, new CopyListener() {
+            public void copied(String filePath, Transfer transfer, int count, int total) {
+                assertTrue(count <= total);
+                progress.incrementAndGet();
+            }
+        });
+        Set<String> copied = find.find(destination);
+        assertEquals(progress.get(), copied.size());
+        assertTrue(copied.equals(find.find(new File("src/test/java"))));
+        assertTrue(transfer.getBytes() > 0);
+        assertTrue(new File("target/tree/com/goodworkalan/comfort/io").isDirectory());
+        Files.copyTree(new File("src/test"), destination, new Find());
+        assertTrue(new File("target/tree/findable/files/a").isFile());
+        Files.unlink(destination);
+    }
+
+    /** Test that a tree copy reports every failure. */
+    @Test
+    public void copyTreeFailure() {
+        File destination = new File("target/tree");
+        Files.unlink(destination);
+        new File(destination, "findable/files/a").mkdirs();
+        try {
+            Files.copyTree(new File("src/test"), destination, new Find().filesOnly());
+        } catch (ComfortIOException e) {
+            assertEquals(e.getCode(), ComfortIOException.COPY_TREE_FAILURE);
+            assertEquals(e.getSuppressed().length, 1);
+            assertTrue(new File("target/tree/readable/lines.txt").isFile());
+            return;
+        } finally {
+            Files.unlink(destination);
+        }
+        throw new AssertionError();
+    }
+
+    /** Test that an interrupted tree copy reports its cancelled copies. */
+    @Test
+    public void copyTreeCancelled() {
+        File destination = new File("target/cancelled");
+        Files.unlink(destination);
+        Thread.currentThread().interrupt();
+        try {
+            Files.copyTree(new File("src"), destination, new Find().filesOnly(), 1, null);
+        } catch (ComfortIOException e) {
+            assertEquals(e.getCode(), ComfortIOException.COPY_TREE_CANCELLED);
+            assertTrue(e.getMessage().startsWith("Cancelled the copy of ("));
+            assertTrue(Thread.interrupted());
+            return;
+        } finally {
+            Thread.interrupted();
+            Files.unlink(destination);
+        }
+        throw new AssertionError();
+    }
+
+    /** Test a file copy with an invalid chunk size. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void copyBadChunk() {
+        Files.copy(new File("README"), new File("target/README"), 0, false);
+    }
+
     /** Test a file copy I/O exception. */
     @Test(expectedExceptions=ComfortIOException.class)
     public void copyFailure() {
@@ -111,6 +323,94 @@ public class FilesTest {
         assertEquals(slurped.get(1), "b");
     }
     
+    /** Test streaming lines. */
+    @Test
+    public void lines() {
+        LineIterator lines = Files.lines(new File("src/test/readable/lines.txt"), Charset.forName("UTF-8"));
+        assertTrue(lines.hasNext());
+        assertEquals(lines.next(), "a");
+        assertEquals(lines.nextSequence().toString(), "b");
+        assertEquals(lines.next(), "c");
+        assertFalse(lines.hasNext());
+        assertNull(lines.nextSequence());
+        lines.close();
+    }
+
+    /** Test streaming lines across small windows and a small buffer. */
+    @Test
+    public void linesWindowed() throws IOException {
+        File file = new File("target/windowed.txt");
+        StringBuilder expected = new StringBuilder();
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 200; i++) {
+            StringBuilder line = new StringBuilder();
+            for (int j = 0; j < i % 37; j++) {
+                line.append(j % 3 == 0 ? '\u00e9' : (char) ('a' + j % 26));
+            }
+            lines.add(line.toString());
+            expected.append(line).append(i % 3 == 0 ? "\r\n" : i % 3 == 1 && (i + 1) % 37 != 0 ? "\r" : "\n");
+        }
+        lines.add("last");
+        expected.append("last");
+        java.nio.file.Files.write(file.toPath(), expected.toString().getBytes("UTF-8"));
+        LineIterator iterator = new LineIterator(file, Charset.forName("UTF-8"), 16, 4);
+        List<String> read = new ArrayList<String>();
+        CharSequence line;
+        while ((line = iterator.nextSequence()) != null) {
+            read.add(line.toString());
+        }
+        assertEquals(read, lines);
+        iterator.close();
+        file.delete();
+    }
+
+    /** Test streaming lines of an empty file. */
+    @Test
+    public void linesEmpty() throws IOException {
+        File file = new File("target/empty.txt");
+        Files.touch(file);
+        assertFalse(Files.lines(file, Charset.forName("UTF-8")).hasNext());
+        file.delete();
+    }
+
+    /** Test I/O exceptions when streaming lines. */
+    @Test(expectedExceptions = ComfortIOException.class)
+    public void linesException() {
+        Files.lines(new File("target/missing.txt"), Charset.forName("UTF-8"));
+    }
+
+    /** Test processing lines in parallel over split regions. */
+    @Test
+    public void forEachLine() throws IOException {
+        File file = new File("target/regions.txt");
+        StringBuilder expected = new StringBuilder();
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 500; i++) {
+            StringBuilder line = new StringBuilder();
+            for (int j = 0; j < i % 23; j++) {
+                line.append(j % 4 == 0 ? '\u00e9' : (char) ('a' + j % 26));
+            }
+            lines.add(i + line.toString());
+            expected.append(i).append(line).append(i % 3 == 0 ? "\r\n" : i % 3 == 1 ? "\r" : "\n");
+        }
+        java.nio.file.Files.write(file.toPath(), expected.toString().getBytes("UTF-8"));
+        LineHandler<String> handler = new LineHandler<String>() {
+            public String line(CharSequence line) {
+                return line.toString();
+            }
+        };
+        ForkJoinPool pool = new ForkJoinPool(4);
+        assertEquals(Files.forEachLine(file, Charset.forName("UTF-8"), handler, pool, true, 16), lines);
+        assertEquals(Files.forEachLine(file, Charset.forName("UTF-8"), handler, pool, true), lines);
+        List<String> unordered = Files.forEachLine(file, Charset.forName("UTF-8"), handler, pool, false, 16);
+        assertEquals(unordered.size(), lines.size());
+        assertTrue(new HashSet<String>(unordered).equals(new HashSet<String>(lines)));
+        java.nio.file.Files.write(file.toPath(), expected.toString().getBytes("UTF-16"));
+        assertEquals(Files.forEachLine(file, Charset.forName("UTF-16"), handler, pool, true, 16), lines);
+        pool.shutdown();
+        file.delete();
+    }
+
     /** Test I/O exceptions during a slurp. */
     @Test
     public void splurpException() {
@@ -139,6 +439,95 @@ public class FilesTest {
         }
     }    
     
+    /** Test pour lines with a character set through a small buffer. */
+    @Test
+    public void pourCharset() throws IOException {
+        File file = new File("target/encoded.txt");
+        List<Object> lines = new ArrayList<Object>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            StringBuilder line = new StringBuilder();
+            for (int j = 0; j < i % 13; j++) {
+                line.append(j % 2 == 0 ? "\u00e9" : "\ud83d\ude00");
+            }
+            lines.add(i % 2 == 0 ? line : line.toString());
+            expected.append(line).append('\n');
+        }
+        lines.add(1);
+        expected.append("1\n");
+        Files.pour(file, lines, Charset.forName("UTF-8"), 16, true);
+        assertEquals(new String(java.nio.file.Files.readAllBytes(file.toPath()), "UTF-8"), expected.toString());
+        Files.pour(file, Arrays.asList("a", "b"), Charset.forName("UTF-16BE"));
+        assertEquals(new String(java.nio.file.Files.readAllBytes(file.toPath()), "UTF-16BE"), "a\nb\n");
+        file.delete();
+    }
+
+    /** Test atomic replacement by pour and copy. */
+    @Test
+    public void atomic() {
+        File directory = new File("target/atomic");
+        Files.unlink(directory);
+        directory.mkdirs();
+        File file = new File(directory, "a.txt");
+        Files.pourAtomic(file, Arrays.asList("a"), Charset.forName("UTF-8"), true);
+        Files.pourAtomic(file, Arrays.asList("b"), Charset.forName("UTF-8"), false);
+        assertEquals(Files.slurp(file), Arrays.asList("b"));
+        File copy = new File(directory, "b.txt");
+        assertEquals(Files.copyAtomic(file, copy, true).getBytes(), 2L);
+        assertEquals(Files.slurp(copy), Arrays.asList("b"));
+        assertEquals(directory.list().length, 2);
+        Files.unlink(directory);
+    }
+
+    /** Test that atomic replacement keeps the permissions of the target. */
+    @Test
+    public void atomicPermissions() throws IOException {
+        File directory = new File("target/atomic");
+        Files.unlink(directory);
+        directory.mkdirs();
+        try {
+            File file = new File(directory, "a.sh");
+            Files.pour(file, Arrays.asList("a"));
+            Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rwxr-x---");
+            try {
+                java.nio.file.Files.setPosixFilePermissions(file.toPath(), permissions);
+            } catch (UnsupportedOperationException e) {
+                return;
+            }
+            Files.pourAtomic(file, Arrays.asList("b"), Charset.forName("UTF-8"), false);
+            assertTrue(java.nio.file.Files.getPosixFilePermissions(file.toPath()).equals(permissions));
+            File copy = new File(directory, "b.sh");
+            Files.pour(copy, Arrays.asList("c"));
+            java.nio.file.Files.setPosixFilePermissions(copy.toPath(), PosixFilePermissions.fromString("rw-rw-r--"));
+            Files.copyAtomic(file, copy, false);
+            assertEquals(Files.slurp(copy), Arrays.asList("b"));
+            assertTrue(java.nio.file.Files.getPosixFilePermissions(copy.toPath()).equals(PosixFilePermissions.fromString("rw-rw-r--")));
+        } finally {
+            Files.unlink(directory);
+        }
+    }
+
+    /** Test that a failed atomic copy leaves no temporary file. */
+    @Test
+    public void atomicFailure() {
+        File directory = new File("target/atomic");
+        Files.unlink(directory);
+        directory.mkdirs();
+        try {
+            Files.copyAtomic(new File("target/missing.txt"), new File(directory, "a.txt"), false);
+        } catch (ComfortIOException e) {
+            assertEquals(e.getCode(), ComfortIOException.COPY_FAILURE);
+        }
+        assertEquals(directory.list().length, 0);
+        Files.unlink(directory);
+    }
+
+    /** Test pour with a buffer that is too small. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void pourBadBuffer() {
+        Files.pour(new File("target/encoded.txt"), Arrays.asList("a"), Charset.forName("UTF-8"), 8, false);
+    }
+
     /** Test I/O exceptions during a pour. */
     @Test
     public void pourException() {
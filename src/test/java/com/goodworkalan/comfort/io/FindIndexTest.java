@@ -0,0 +1,103 @@
+package com.goodworkalan.comfort.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the FindIndex class.
+ *
+ * @author Alan Gutierrez
+ */
+public class FindIndexTest {
+    /** A modification time well in the past. */
+    private final static long PAST = 1000000000000L;
+
+    /**
+     * Create a directory tree whose directories were modified in the past.
+     * 
+     * @return The directory.
+     */
+    private File tree() {
+        File directory = new File("target/indexed/tree");
+        Files.unlink(directory.getParentFile());
+        new File(directory, "a/b").mkdirs();
+        new File(directory, "c").mkdirs();
+        Files.pour(new File(directory, "a/one.txt"), Arrays.asList("one"));
+        Files.pour(new File(directory, "a/b/two.txt"), Arrays.asList("two"));
+        Files.pour(new File(directory, "c/three.java"), Arrays.asList("three"));
+        for (String path : new String[] { "", "a", "a/b", "c" }) {
+            new File(directory, path).setLastModified(PAST);
+        }
+        return directory;
+    }
+
+    /** Test that queries answered by the index match a file system walk. */
+    @Test
+    public void find() {
+        File directory = tree();
+        File file = new File("target/indexed/index.bin");
+        FindIndex index = new FindIndex(directory, file);
+        assertEquals(index.size(), 0);
+        assertEquals(index.refresh(), 4);
+        assertEquals(index.refresh(), 0);
+        assertTrue(file.isFile());
+        for (Find find : new Find[] { new Find(), new Find().include("**/*.txt"), new Find().filesOnly(), new Find().exclude("a/**") }) {
+            assertEquals(find.find(index), find.find(directory));
+        }
+        assertEquals(index.getDirectory(), directory);
+    }
+
+    /** Test that only modified directories are listed again. */
+    @Test
+    public void revalidate() {
+        File directory = tree();
+        File file = new File("target/indexed/index.bin");
+        new FindIndex(directory, file).refresh();
+        FindIndex index = new FindIndex(directory, file);
+        assertEquals(index.size(), 4);
+        Files.pour(new File(directory, "a/b/four.txt"), Arrays.asList("four"));
+        new File(directory, "a/b").setLastModified(PAST + 1000);
+        assertEquals(index.refresh(), 1);
+        assertTrue(new Find().include("**/four.txt").find(index).contains(Files.file("a", "b", "four.txt")));
+        Files.unlink(new File(directory, "c"));
+        directory.setLastModified(PAST + 1000);
+        assertEquals(index.refresh(), 1);
+        assertEquals(index.size(), 3);
+        assertEquals(new Find().find(index), new Find().find(directory));
+    }
+
+    /** Test that a corrupt index file is discarded. */
+    @Test
+    public void corrupt() throws IOException {
+        File directory = tree();
+        File file = new File("target/indexed/index.bin");
+        new FindIndex(directory, file).refresh();
+        RandomAccessFile random = new RandomAccessFile(file, "rw");
+        random.seek(20);
+        int b = random.read();
+        random.seek(20);
+        random.write(b ^ 0xff);
+        random.close();
+        assertEquals(new FindIndex(directory, file).size(), 0);
+        new FindIndex(directory, file).refresh();
+        assertEquals(new FindIndex(new File(directory, "a"), file).size(), 0);
+        random = new RandomAccessFile(file, "rw");
+        random.setLength(random.length() - 3);
+        random.close();
+        assertEquals(new FindIndex(directory, file).size(), 0);
+    }
+
+    /** Test that an index file inside the indexed directory is rejected. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void inside() {
+        File directory = tree();
+        new FindIndex(directory, new File(directory, "a/../index.bin"));
+    }
+}
@@ -5,7 +5,15 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.testng.annotations.Test;
 
@@ -65,6 +73,98 @@ public class FindTest {
         assertTrue(files.contains("com/goodworkalan/comfort/io/FindTest.java"));
     }
     
+    /** Test that an include pattern with a literal prefix still finds files. */
+    @Test
+    public void includePrefix() {
+        Set<String> files = new Find().include("com/goodworkalan/comfort/io/*.java").find(new File("src/test/java"));
+        assertEquals(files.size(), new Find().include("**/*.java").find(new File("src/test/java")).size());
+        assertTrue(files.contains(Files.file("com", "goodworkalan", "comfort", "io", "FindTest.java")));
+        assertTrue(new Find().include("org/**").find(new File("src/test/java")).isEmpty());
+    }
+
+    /** Test that an exclude pattern ending in a depth match skips directories. */
+    @Test
+    public void excludeDirectory() {
+        Set<String> files = new Find().exclude("com/goodworkalan/**").find(new File("src/test/java"));
+        assertTrue(files.contains("com"));
+        assertTrue(files.contains(Files.file("com", "goodworkalan")));
+        assertFalse(files.contains(Files.file("com", "goodworkalan", "comfort")));
+        assertFalse(files.contains(Files.file("com", "goodworkalan", "comfort", "io", "FindTest.java")));
+    }
+
+    /** Test a parallel find that preserves the search order. */
+    @Test
+    public void parallelOrdered() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Find find = new Find().exclude("**/GlobTest.java");
+            List<String> expected = new ArrayList<String>(find.find(new File("src")));
+            List<String> actual = new ArrayList<String>(find.find(new File("src"), pool));
+            assertEquals(actual, expected);
+            assertTrue(find.find(new File("README"), pool).isEmpty());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Test a parallel find that sends files to a listener. */
+    @Test
+    public void parallelUnordered() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Find find = new Find().include("**/*.java");
+            final Set<String> found = Collections.synchronizedSet(new HashSet<String>());
+            find.find(new File("src"), pool, new FindListener() {
+                public void found(File base, String filePath) {
+                    found.add(filePath);
+                }
+            });
+            assertTrue(found.equals(find.find(new File("src"))));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Test a lazy find that returns files as they are found. */
+    @Test
+    public void iterator() {
+        Find find = new Find().include("**/*.java");
+        List<String> found = new ArrayList<String>();
+        FindIterator iterator = find.iterator(new File("src"));
+        while (iterator.hasNext()) {
+            found.add(iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+        assertEquals(found, new ArrayList<String>(find.find(new File("src"))));
+        assertFalse(find.iterator(new File("README")).hasNext());
+    }
+
+    /** Test closing a lazy find before it is exhausted. */
+    @Test
+    public void iteratorClose() {
+        FindIterator iterator = new Find().iterator(new File("src"));
+        assertTrue(iterator.hasNext());
+        assertEquals(iterator.next(), new Find().find(new File("src")).iterator().next());
+        iterator.close();
+        assertFalse(iterator.hasNext());
+        iterator.close();
+    }
+
+    /** Test that the end of a lazy find raises an exception. */
+    @Test(expectedExceptions = NoSuchElementException.class)
+    public void iteratorExhausted() {
+        FindIterator iterator = new Find().iterator(new File("src/test/findable/files"));
+        assertEquals(iterator.next(), "a");
+        assertFalse(iterator.hasNext());
+        new Find().include("**/z").iterator(new File("src/test/findable")).next();
+    }
+
+    /** Test that files cannot be removed through a lazy find. */
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void iteratorRemove() {
+        new Find().iterator(new File("src")).remove();
+    }
+
     /** Test the is file condition. */
     @Test
     public void isFile() {
@@ -74,6 +174,27 @@ public class FindTest {
     }
     
     
+    /** Test a filter that is given the file attributes. */
+    @Test
+    public void attributeFilter() {
+        Find find = new Find().include("**/*.java").filter("empty", new FindAttributeFilter() {
+            public boolean accept(File base, String filePath) {
+                throw new UnsupportedOperationException();
+            }
+
+            public boolean accept(File base, String filePath, BasicFileAttributes attributes) {
+                return attributes.size() > 0;
+            }
+        });
+        Set<String> files = find.find(new File("src/test/java"));
+        assertTrue(files.contains(Files.file("com", "goodworkalan", "comfort", "io", "FindTest.java")));
+        assertTrue(new Find().filter("none", new FindFilter() {
+            public boolean accept(File base, String filePath) {
+                return false;
+            }
+        }).find(new File("src")).isEmpty());
+    }
+
     /** Test the has filters. */
     @Test
     public void hasFilters() {
@@ -82,4 +203,116 @@ public class FindTest {
         find.include("**/a");
         assertTrue(find.hasFilters());
     }
+
+    /** Test that a named filter does not replace the glob filters. */
+    @Test
+    public void filterNamedInclude() {
+        Find find = new Find().filter("include", new FindFilter() {
+            public boolean accept(File base, String filePath) {
+                return true;
+            }
+        }).include("**/a").exclude("directory/**");
+        assertEquals(find.find(new File("src/test/findable")), Collections.singleton("files" + File.separator + "a"));
+    }
+
+    /** Test evaluating many finds in a single walk. */
+    @Test
+    public void findAllQueries() {
+        File directory = new File("src");
+        Find[] finds = new Find[] {
+            new Find().include("**/*.java"),
+            new Find().include("main/**/Find*.java"),
+            new Find().include("test/**").filesOnly(),
+            new Find().exclude("**/io/**"),
+            new Find().include("none/**")
+        };
+        List<Set<String>> matches = Find.findAll(directory, finds);
+        assertEquals(matches.size(), finds.length);
+        for (int i = 0; i < finds.length; i++) {
+            assertEquals(new ArrayList<String>(matches.get(i)), new ArrayList<String>(finds[i].find(directory)));
+        }
+        assertTrue(matches.get(4).isEmpty());
+        assertTrue(Find.findAll(directory).isEmpty());
+        assertTrue(Find.findAll(new File("missing"), finds[0]).get(0).isEmpty());
+    }
+
+    /** Test that evaluating many finds in a single walk uses a listing cache. */
+    @Test
+    public void findAllCached() {
+        File directory = new File("src");
+        ListingCache cache = new ListingCache(1024, 60000);
+        Find[] finds = new Find[] { new Find().include("**/*.java"), new Find().cache(cache).include("test/**") };
+        List<Set<String>> matches = Find.findAll(directory, finds);
+        assertEquals(new ArrayList<String>(matches.get(0)), new ArrayList<String>(new Find().include("**/*.java").find(directory)));
+        long misses = cache.getMisses();
+        assertTrue(misses != 0);
+        assertEquals(Find.findAll(directory, finds), matches);
+        assertEquals(cache.getMisses(), misses);
+        assertEquals(cache.getHits(), misses);
+    }
+
+    /** A filter that counts the files it tests. */
+    private static class CountingFilter implements FindFilter, FindFilterCost {
+        /** The relative cost. */
+        private final double cost;
+
+        /** Whether to accept files. */
+        private final boolean accept;
+
+        /** The number of files tested. */
+        public final AtomicInteger count = new AtomicInteger();
+
+        /**
+         * Create a counting filter.
+         * 
+         * @param cost
+         *            The relative cost.
+         * @param accept
+         *            Whether to accept files.
+         */
+        public CountingFilter(double cost, boolean accept) {
+            this.cost = cost;
+            this.accept = accept;
+        }
+
+        public boolean accept(File base, String filePath) {
+            count.incrementAndGet();
+            return accept;
+        }
+
+        public double getCost() {
+            return cost;
+        }
+
+        public double getSelectivity() {
+            return 0.5;
+        }
+    }
+
+    /** Test that filters are evaluated in order of cost. */
+    @Test
+    public void filterCost() {
+        CountingFilter expensive = new CountingFilter(100, true);
+        CountingFilter cheap = new CountingFilter(1, false);
+        Find find = new Find().filter("expensive", expensive).filter("cheap", cheap);
+        assertTrue(find.find(new File("src")).isEmpty());
+        assertTrue(cheap.count.get() > 0);
+        assertEquals(expensive.count.get(), 0);
+    }
+
+    /** Test that filters are reordered by their observed rejection rates. */
+    @Test
+    public void adaptive() {
+        CountingFilter accepting = new CountingFilter(1, true);
+        CountingFilter rejecting = new CountingFilter(1, false);
+        Find find = new Find().filter("accepting", accepting).filter("rejecting", rejecting).adaptive();
+        File directory = new File("src");
+        while (rejecting.count.get() <= Find.REORDER_INTERVAL) {
+            assertTrue(find.find(directory).isEmpty());
+        }
+        int count = accepting.count.get();
+        assertTrue(count > 0);
+        find.find(directory);
+        assertEquals(accepting.count.get(), count);
+    }
 }
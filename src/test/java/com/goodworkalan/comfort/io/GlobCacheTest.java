@@ -0,0 +1,49 @@
+package com.goodworkalan.comfort.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the GlobCache class.
+ *
+ * @author Alan Gutierrez
+ */
+public class GlobCacheTest {
+    /** Test hits, misses and least recently used eviction. */
+    @Test
+    public void compile() {
+        GlobCache cache = new GlobCache(2);
+        Glob a = cache.compile("**/*.a");
+        Glob b = cache.compile("**/*.b");
+        assertSame(cache.compile("**/*.a"), a);
+        cache.compile("**/*.c");
+        assertEquals(cache.size(), 2);
+        assertSame(cache.compile("**/*.a"), a);
+        assertNotSame(cache.compile("**/*.b"), b);
+        assertEquals(cache.getHits(), 2L);
+        assertEquals(cache.getMisses(), 4L);
+        assertEquals(cache.getCapacity(), 2);
+        cache.clear();
+        assertEquals(cache.size(), 0);
+        assertEquals(cache.getHits(), 0L);
+    }
+
+    /** Test the shared cache. */
+    @Test
+    public void shared() {
+        Glob glob = Glob.compile("src/**/*.java");
+        assertSame(Glob.compile("src/**/*.java"), glob);
+        assertTrue(glob.match("src/a/A.java"));
+        assertTrue(Glob.getCache().getHits() > 0);
+    }
+
+    /** Test an invalid capacity. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void badCapacity() {
+        new GlobCache(0);
+    }
+}
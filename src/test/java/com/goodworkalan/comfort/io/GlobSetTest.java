@@ -0,0 +1,94 @@
+package com.goodworkalan.comfort.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.BitSet;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the GlobSet class.
+ *
+ * @author Alan Gutierrez
+ */
+public class GlobSetTest {
+    /** Test an empty glob set. */
+    @Test
+    public void empty() {
+        GlobSet globs = new GlobSet();
+        assertEquals(globs.size(), 0);
+        assertFalse(globs.match(new File("hello")));
+        assertTrue(globs.matches("hello").isEmpty());
+    }
+
+    /** Test matching any of many globs. */
+    @Test
+    public void match() {
+        GlobSet globs = new GlobSet().add("**/*.java").add("hello/*").add(new Glob("**/world"));
+        assertEquals(globs.size(), 3);
+        assertEquals(globs.get(1), new Glob("hello/*"));
+        assertTrue(globs.match(new File("a/b/C.java")));
+        assertTrue(globs.match(new File("hello/nurse")));
+        assertTrue(globs.match(new File("hello/world")));
+        assertFalse(globs.match(new File("hello")));
+        assertFalse(globs.match(new File("a/b/C.class")));
+    }
+
+    /** Test reporting which globs matched. */
+    @Test
+    public void matches() {
+        GlobSet globs = new GlobSet().add("**/*.java").add("hello/*").add("**/world").add("**/*.java");
+        BitSet matches = globs.matches(Files.file("hello", "world"));
+        assertFalse(matches.get(0));
+        assertTrue(matches.get(1));
+        assertTrue(matches.get(2));
+        assertFalse(matches.get(3));
+        matches = globs.matches(Files.file("hello", "World.java"));
+        assertTrue(matches.get(0));
+        assertTrue(matches.get(1));
+        assertFalse(matches.get(2));
+        assertTrue(matches.get(3));
+    }
+
+    /** Test that adding a glob after matching recompiles the set. */
+    @Test
+    public void addAfterMatch() {
+        GlobSet globs = new GlobSet().add("hello");
+        assertFalse(globs.match(new File("world")));
+        globs.add("world");
+        assertTrue(globs.match(new File("world")));
+    }
+
+    /** Test that an empty path matches only a single depth match. */
+    @Test
+    public void emptyPath() {
+        GlobSet globs = new GlobSet().add("**/**").add("**");
+        BitSet matches = globs.matches("");
+        assertFalse(matches.get(0));
+        assertTrue(matches.get(1));
+    }
+
+    /** Test a large set of literal globs mixed with patterns. */
+    @Test
+    public void literals() {
+        GlobSet globs = new GlobSet();
+        for (int i = 0; i < 1000; i++) {
+            globs.add("src/" + (i % 10) + "/File" + i + ".java");
+        }
+        globs.add("src/**/*.txt").add("src/1/File1.java");
+        assertTrue(globs.match(Files.file("src", "1", "File11.java")));
+        assertFalse(globs.match(Files.file("src", "1", "File12.java")));
+        assertFalse(globs.match(Files.file("src", "1")));
+        assertTrue(globs.match(Files.file("src", "2", "a.txt")));
+        assertTrue(globs.descendable(Files.file("src", "1")));
+        assertFalse(globs.descendable("test"));
+        assertFalse(globs.subsumes("src"));
+        BitSet matches = globs.matches(Files.file("src", "1", "File1.java"));
+        assertEquals(matches.cardinality(), 2);
+        assertTrue(matches.get(1));
+        assertTrue(matches.get(1001));
+    }
+}
@@ -119,6 +119,79 @@ public class GlobTest {
         assertFalse(glob.match(new File("world")));
     }
 
+    /** Test that the final match must consume the final part. */
+    @Test
+    public void trailingMultiple() {
+        Glob glob = new Glob("hello/**");
+        assertFalse(glob.match(new File("hello")));
+        assertTrue(glob.match(new File("hello/world")));
+        assertTrue(glob.match(new File("hello/world/nurse")));
+        glob = new Glob("he*");
+        assertFalse(glob.match(new File("he")));
+        assertTrue(glob.match(new File("hello")));
+        assertTrue(new Glob("**").match(""));
+        assertFalse(new Glob("**/**").match(""));
+    }
+
+    /** Test that many depth matches do not backtrack exponentially. */
+    @Test(timeOut = 10000)
+    public void manyDepthGlob() {
+        Glob glob = new Glob("**/a/**/a/**/a/**/a/**/a/**/a/**/a/**/b");
+        StringBuilder path = new StringBuilder("a");
+        for (int i = 0; i < 64; i++) {
+            path.append(File.separator).append("a");
+        }
+        assertFalse(glob.match(path.toString()));
+        path.append(File.separator).append("b");
+        assertTrue(glob.match(path.toString()));
+        assertFalse(new Glob("*a*a*a*a*a*a*a*a*b").match("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa"));
+    }
+
+    /** Test whether descendants of a directory can match. */
+    @Test
+    public void descendable() {
+        Glob glob = new Glob("src/main/**/*.java");
+        assertTrue(glob.descendable(""));
+        assertTrue(glob.descendable("src"));
+        assertTrue(glob.descendable(Files.file("src", "main")));
+        assertTrue(glob.descendable(Files.file("src", "main", "java", "com")));
+        assertFalse(glob.descendable("node_modules"));
+        assertFalse(glob.descendable(Files.file("src", "test")));
+        glob = new Glob("hello/world");
+        assertTrue(glob.descendable("hello"));
+        assertFalse(glob.descendable(Files.file("hello", "world")));
+    }
+
+    /** Test whether every descendant of a directory matches. */
+    @Test
+    public void subsumes() {
+        Glob glob = new Glob("**/target/**");
+        assertTrue(glob.subsumes("target"));
+        assertTrue(glob.subsumes(Files.file("a", "b", "target")));
+        assertTrue(glob.subsumes(Files.file("a", "target", "classes")));
+        assertFalse(glob.subsumes("a"));
+        assertFalse(new Glob("target/*").subsumes("target"));
+        assertFalse(new Glob("target/**/*.class").subsumes("target"));
+    }
+
+    /** Test the simple shapes of file patterns. */
+    @Test
+    public void filePatternShapes() {
+        assertTrue(new FilePattern("Test*").match(new String[] { "TestA" }, 0));
+        assertFalse(new FilePattern("Test*").match(new String[] { "Test" }, 0));
+        assertTrue(new FilePattern("*.java").match(new String[] { "A.java" }, 0));
+        assertTrue(new FilePattern("*.java").match(new String[] { ".java" }, 0));
+        assertFalse(new FilePattern("*.java").match(new String[] { "A.jav" }, 0));
+        assertTrue(new FilePattern("Test*.class").match(new String[] { "TestA.class" }, 0));
+        assertTrue(new FilePattern("Test*.class").match(new String[] { "Test.class" }, 0));
+        assertFalse(new FilePattern("ab*ba").match(new String[] { "aba" }, 0));
+        assertTrue(new FilePattern("*Test*").match(new String[] { "ATests" }, 0));
+        assertTrue(new FilePattern("*Test*").match(new String[] { "TestTest" }, 0));
+        assertFalse(new FilePattern("*Test*").match(new String[] { "ATest" }, 0));
+        assertTrue(new FilePattern("a*b*c").match(new String[] { "abc" }, 0));
+        assertFalse(new FilePattern("a?").match(new String[] { "a" }, 0));
+    }
+
     /** Test equality and hash codes of glob and parts. */
     @Test
     public void equality() {
@@ -0,0 +1,96 @@
+package com.goodworkalan.comfort.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the Grep class.
+ *
+ * @author Alan Gutierrez
+ */
+public class GrepTest {
+    /**
+     * Create a directory of log files to search.
+     * 
+     * @return The directory.
+     */
+    private File logs() {
+        File directory = new File("target/grep");
+        Files.unlink(directory);
+        new File(directory, "b").mkdirs();
+        Files.pour(new File(directory, "a.log"), Arrays.asList("INFO start", "ERROR disk", "INFO stop"));
+        Files.pour(new File(directory, "b/c.log"), Arrays.asList("ERROR one", "ERROR two", "ERROR three"));
+        Files.pour(new File(directory, "b/d.txt"), Arrays.asList("ERROR ignored"));
+        new File(directory, "e.log").mkdirs();
+        return directory;
+    }
+
+    /**
+     * Search the logs with the given grep and return the matches as sorted
+     * strings.
+     * 
+     * @param grep
+     *            The grep.
+     * @return The sorted matches.
+     */
+    private List<String> grep(Grep grep) {
+        final List<String> matches = new ArrayList<String>();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        grep.grep(logs(), pool, new GrepListener() {
+            public void match(File base, String filePath, long lineNumber, String line) {
+                synchronized (matches) {
+                    matches.add(filePath + ":" + lineNumber + ":" + line);
+                }
+            }
+        });
+        pool.shutdown();
+        Collections.sort(matches);
+        return matches;
+    }
+
+    /** Test a literal search. */
+    @Test
+    public void literal() {
+        List<String> matches = grep(new Grep(new Find().include("**/*.log"), Pattern.compile("ERROR")).charset(Charset.forName("UTF-8")));
+        assertEquals(matches, Arrays.asList("a.log:2:ERROR disk", "b/c.log:1:ERROR one", "b/c.log:2:ERROR two", "b/c.log:3:ERROR three"));
+    }
+
+    /** Test a regular expression search with a maximum per file. */
+    @Test
+    public void regex() {
+        List<String> matches = grep(new Grep(new Find().include("**/*.log"), Pattern.compile("^ERROR")).maximum(2));
+        assertEquals(matches, Arrays.asList("a.log:2:ERROR disk", "b/c.log:1:ERROR one", "b/c.log:2:ERROR two"));
+    }
+
+    /** Test detection of literal patterns. */
+    @Test
+    public void literalPattern() {
+        assertEquals(Grep.literal(Pattern.compile("abc")), "abc");
+        assertEquals(Grep.literal(Pattern.compile("a.c", Pattern.LITERAL)), "a.c");
+        assertNull(Grep.literal(Pattern.compile("a.c")));
+        assertNull(Grep.literal(Pattern.compile("abc", Pattern.CASE_INSENSITIVE)));
+        assertTrue(Grep.contains("abcabd", "abd"));
+        assertTrue(Grep.contains("abc", ""));
+        assertFalse(Grep.contains("ab", "abc"));
+        assertFalse(Grep.contains("abcabc", "abd"));
+    }
+
+    /** Test an invalid maximum. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void badMaximum() {
+        new Grep(new Find(), Pattern.compile("a")).maximum(0);
+    }
+}
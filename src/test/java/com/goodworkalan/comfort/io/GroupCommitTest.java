@@ -0,0 +1,73 @@
+package com.goodworkalan.comfort.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the GroupCommit class.
+ *
+ * @author Alan Gutierrez
+ */
+public class GroupCommitTest {
+    /** Test that writes are not visible until the batch is committed. */
+    @Test
+    public void commit() {
+        File directory = new File("target/group");
+        Files.unlink(directory);
+        directory.mkdirs();
+        File a = new File(directory, "a.txt");
+        File b = new File(directory, "b.txt");
+        Files.pour(a, Arrays.asList("old"));
+        GroupCommit group = new GroupCommit();
+        group.pour(a, Arrays.asList("new"), Charset.forName("UTF-8"));
+        assertEquals(group.copy(a, b).getBytes(), 4L);
+        assertEquals(group.size(), 2);
+        assertEquals(Files.slurp(a), Arrays.asList("old"));
+        assertFalse(b.exists());
+        group.commit();
+        assertEquals(group.size(), 0);
+        assertEquals(Files.slurp(a), Arrays.asList("new"));
+        assertEquals(Files.slurp(b), Arrays.asList("old"));
+        assertEquals(directory.list().length, 2);
+    }
+
+    /** Test that a full batch is committed automatically. */
+    @Test
+    public void batchSize() {
+        File directory = new File("target/group");
+        Files.unlink(directory);
+        directory.mkdirs();
+        GroupCommit group = new GroupCommit(2);
+        group.pour(new File(directory, "a.txt"), Arrays.asList("a"), Charset.forName("UTF-8"));
+        assertFalse(new File(directory, "a.txt").exists());
+        group.pour(new File(directory, "b.txt"), Arrays.asList("b"), Charset.forName("UTF-8"));
+        assertTrue(new File(directory, "a.txt").exists());
+        assertTrue(new File(directory, "b.txt").exists());
+        assertEquals(group.size(), 0);
+    }
+
+    /** Test discarding pending writes. */
+    @Test
+    public void rollback() {
+        File directory = new File("target/group");
+        Files.unlink(directory);
+        directory.mkdirs();
+        GroupCommit group = new GroupCommit();
+        group.pour(new File(directory, "a.txt"), Arrays.asList("a"), Charset.forName("UTF-8"));
+        group.rollback();
+        assertEquals(directory.list().length, 0);
+    }
+
+    /** Test an invalid batch size. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void badBatchSize() {
+        new GroupCommit(0);
+    }
+}
@@ -0,0 +1,164 @@
+package com.goodworkalan.comfort.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the ListingCache class.
+ *
+ * @author Alan Gutierrez
+ */
+public class ListingCacheTest {
+    /**
+     * Create a directory tree to search.
+     * 
+     * @return The directory.
+     */
+    private File tree() {
+        File directory = new File("target/cached");
+        Files.unlink(directory);
+        new File(directory, "a/b").mkdirs();
+        Files.pour(new File(directory, "a/one.txt"), Arrays.asList("one"));
+        Files.pour(new File(directory, "a/b/two.java"), Arrays.asList("two"));
+        for (String path : new String[] { "", "a", "a/b" }) {
+            new File(directory, path).setLastModified(1000000000000L);
+        }
+        return directory;
+    }
+
+    /** Test finds that share a cache validated by modification time. */
+    @Test
+    public void modified() {
+        File directory = tree();
+        ListingCache cache = new ListingCache(16);
+        Find text = new Find().include("**/*.txt").cache(cache);
+        Find files = new Find().filesOnly().cache(cache);
+        assertEquals(text.find(directory), new Find().include("**/*.txt").find(directory));
+        assertEquals(cache.getMisses(), 3L);
+        assertEquals(files.find(directory), new Find().filesOnly().find(directory));
+        assertEquals(cache.getHits(), 3L);
+        assertEquals(cache.size(), 3);
+        Files.pour(new File(directory, "a/three.txt"), Arrays.asList("three"));
+        new File(directory, "a").setLastModified(1000000001000L);
+        assertTrue(text.find(directory).contains(Files.file("a", "three.txt")));
+        assertEquals(cache.getMisses(), 4L);
+        cache.invalidate(new File(directory, "a"));
+        assertEquals(cache.size(), 2);
+        cache.clear();
+        assertEquals(cache.getHits(), 0L);
+        assertEquals(cache.getCapacity(), 16);
+    }
+
+    /**
+     * Test that a directory modified too recently for a change to be detected
+     * by its modification time is read again.
+     */
+    @Test
+    public void recent() {
+        File directory = tree();
+        directory.setLastModified(System.currentTimeMillis());
+        ListingCache cache = new ListingCache(16);
+        Find find = new Find().cache(cache);
+        find.find(directory);
+        long lastModified = directory.lastModified();
+        Files.pour(new File(directory, "four.txt"), Arrays.asList("four"));
+        directory.setLastModified(lastModified);
+        assertTrue(find.find(directory).contains("four.txt"));
+        assertEquals(cache.getMisses(), 4L);
+    }
+
+    /** Test a cache validated by time to live and evicting old listings. */
+    @Test
+    public void timeToLive() {
+        File directory = tree();
+        ListingCache cache = new ListingCache(3, 60000);
+        Find find = new Find().cache(cache);
+        find.find(directory);
+        assertEquals(cache.getMisses(), 3L);
+        Files.pour(new File(directory, "four.txt"), Arrays.asList("four"));
+        assertFalse(find.find(directory).contains("four.txt"));
+        assertEquals(cache.getHits(), 3L);
+        cache = new ListingCache(2, 60000);
+        new Find().cache(cache).find(directory);
+        assertEquals(cache.size(), 2);
+    }
+
+    /**
+     * Test that a directory deleted after its listing expired is reported as
+     * missing rather than as a read failure.
+     */
+    @Test
+    public void expiredDeleted() throws InterruptedException {
+        File directory = tree();
+        ListingCache cache = new ListingCache(16, 1);
+        File b = new File(directory, "a/b");
+        assertEquals(cache.list(b.toPath()).getNames().length, 1);
+        Thread.sleep(10);
+        Files.unlink(b);
+        assertNull(cache.list(b.toPath()));
+        assertEquals(cache.size(), 0);
+        assertEquals(cache.getMisses(), 2L);
+    }
+
+    /**
+     * Test that concurrent finds of the same directory read the directory
+     * once.
+     */
+    @Test
+    public void concurrent() throws Exception {
+        final File directory = tree();
+        final ListingCache cache = new ListingCache(16);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Listing>> futures = new ArrayList<Future<Listing>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Listing>() {
+                    public Listing call() throws InterruptedException {
+                        start.await();
+                        return cache.list(directory.toPath());
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Listing> future : futures) {
+                assertEquals(future.get().getNames().length, 1);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(cache.getMisses(), 1L);
+        assertEquals(cache.getHits(), 7L);
+    }
+
+    /** Test that a cached find of a file finds nothing, as an uncached find. */
+    @Test
+    public void notDirectory() {
+        File file = new File(tree(), "a/one.txt");
+        ListingCache cache = new ListingCache(16);
+        assertEquals(new Find().find(file).size(), 0);
+        assertEquals(new Find().cache(cache).find(file).size(), 0);
+        assertEquals(new Find().cache(new ListingCache(16, 60000)).find(file).size(), 0);
+        assertEquals(cache.size(), 0);
+    }
+
+    /** Test an invalid capacity. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void badCapacity() {
+        new ListingCache(0);
+    }
+}
@@ -0,0 +1,162 @@
+package com.goodworkalan.comfort.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the LiveFind class.
+ *
+ * @author Alan Gutierrez
+ */
+public class LiveFindTest {
+    /**
+     * Process events until the given list of events contains the given event
+     * or ten seconds have elapsed.
+     * 
+     * @param live
+     *            The live find.
+     * @param events
+     *            The events received.
+     * @param event
+     *            The event to wait for.
+     */
+    private void await(LiveFind live, List<String> events, String event) throws InterruptedException {
+        long stop = System.currentTimeMillis() + 10000;
+        while (!events.contains(event) && System.currentTimeMillis() < stop) {
+            live.process(100, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(events.contains(event), event + " " + events);
+    }
+
+    /** Test that additions, modifications and deletions are published. */
+    @Test
+    public void events() throws InterruptedException {
+        File directory = new File("target/live");
+        Files.unlink(directory);
+        new File(directory, "a").mkdirs();
+        Files.pour(new File(directory, "a/one.txt"), Arrays.asList("one"));
+        final List<String> events = new ArrayList<String>();
+        LiveFind live = new LiveFind(new Find().include("**/*.txt"), directory);
+        live.addListener(new LiveFindListener() {
+            public void added(File base, String filePath) {
+                events.add("+" + filePath);
+            }
+
+            public void modified(File base, String filePath) {
+                events.add("~" + filePath);
+            }
+
+            public void deleted(File base, String filePath) {
+                events.add("-" + filePath);
+            }
+
+            public void failed(File base, RuntimeException failure) {
+                events.add("!" + failure);
+            }
+        });
+        try {
+            assertTrue(live.getMatches().equals(new Find().include("**/*.txt").find(directory)));
+            Files.pour(new File(directory, "a/two.txt"), Arrays.asList("two"));
+            await(live, events, "+" + Files.file("a", "two.txt"));
+            Files.pour(new File(directory, "a/one.txt"), Arrays.asList("uno"));
+            await(live, events, "~" + Files.file("a", "one.txt"));
+            new File(directory, "b/c").mkdirs();
+            Files.pour(new File(directory, "b/c/three.txt"), Arrays.asList("three"));
+            await(live, events, "+" + Files.file("b", "c", "three.txt"));
+            Files.unlink(new File(directory, "a"));
+            await(live, events, "-" + Files.file("a", "one.txt"));
+            await(live, events, "-" + Files.file("a", "two.txt"));
+            assertTrue(live.getMatches().equals(new Find().include("**/*.txt").find(directory)));
+        } finally {
+            live.close();
+        }
+    }
+
+    /**
+     * Create a listener that records events in the given list.
+     * 
+     * @param events
+     *            The list of events.
+     * @param fail
+     *            Whether to throw an exception when a file is added.
+     * @return A listener.
+     */
+    private LiveFindListener recorder(final List<String> events, final boolean fail) {
+        return new LiveFindListener() {
+            public void added(File base, String filePath) {
+                if (fail) {
+                    throw new IllegalStateException(filePath);
+                }
+                events.add("+" + filePath);
+            }
+
+            public void modified(File base, String filePath) {
+            }
+
+            public void deleted(File base, String filePath) {
+            }
+
+            public void failed(File base, RuntimeException failure) {
+                events.add("!" + failure.getMessage());
+            }
+        };
+    }
+
+    /**
+     * Test that a listener that throws an exception does not prevent other
+     * listeners from receiving events and is reported as a failure.
+     */
+    @Test
+    public void listenerFailure() throws InterruptedException {
+        File directory = new File("target/live");
+        Files.unlink(directory);
+        directory.mkdirs();
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        LiveFind live = new LiveFind(new Find(), directory);
+        live.addListener(recorder(events, true)).addListener(recorder(events, false));
+        try {
+            Files.touch(new File(directory, "a.txt"));
+            await(live, events, "+a.txt");
+            await(live, events, "!a.txt");
+        } finally {
+            live.close();
+        }
+    }
+
+    /**
+     * Test that events can be processed by the caller while the daemon thread
+     * is waiting for events.
+     */
+    @Test(timeOut = 20000)
+    public void started() throws InterruptedException {
+        File directory = new File("target/live");
+        Files.unlink(directory);
+        directory.mkdirs();
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        LiveFind live = new LiveFind(new Find(), directory).start().start();
+        live.addListener(recorder(events, false));
+        try {
+            Thread.sleep(100);
+            live.process(10, TimeUnit.MILLISECONDS);
+            Files.touch(new File(directory, "a.txt"));
+            await(live, events, "+a.txt");
+        } finally {
+            live.close();
+        }
+    }
+
+    /** Test that a directory that cannot be watched is reported. */
+    @Test(expectedExceptions = ComfortIOException.class)
+    public void missing() {
+        new LiveFind(new Find(), new File("target/live/missing"));
+    }
+}
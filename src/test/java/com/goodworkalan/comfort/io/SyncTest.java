@@ -0,0 +1,178 @@
+package com.goodworkalan.comfort.io;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the Sync class.
+ *
+ * @author Alan Gutierrez
+ */
+public class SyncTest {
+    /** Test an incremental copy. */
+    @Test
+    public void sync() {
+        File source = new File("target/sync/source");
+        File destination = new File("target/sync/destination");
+        Files.unlink(new File("target/sync"));
+        source.mkdirs();
+        Files.pour(new File(source, "a.txt"), Arrays.asList("a"));
+        Files.pour(new File(source, "b.txt"), Arrays.asList("b"));
+        Sync sync = new Sync(new Find().include("**/*.txt"));
+
+        SyncReport report = sync.sync(source, destination);
+        assertEquals(report.getAdded().size(), 2);
+        assertEquals(report.getUnchanged(), 0);
+        assertEquals(report.getBytes(), 4L);
+
+        report = sync.sync(source, destination);
+        assertTrue(report.isEmpty());
+        assertEquals(report.getUnchanged(), 2);
+
+        Files.pour(new File(source, "b.txt"), Arrays.asList("bb"));
+        report = sync.sync(source, destination);
+        assertEquals(report.getUpdated(), Collections.singletonList("b.txt"));
+        assertEquals(Files.slurp(new File(destination, "b.txt")), Arrays.asList("bb"));
+
+        Files.unlink(new File("target/sync"));
+    }
+
+    /** Test comparing files by digest and deleting orphans. */
+    @Test
+    public void digestAndOrphans() {
+        File source = new File("target/sync/source");
+        File destination = new File("target/sync/destination");
+        Files.unlink(new File("target/sync"));
+        source.mkdirs();
+        Files.pour(new File(source, "a.txt"), Arrays.asList("a"));
+        Sync sync = new Sync(new Find().include("**/*.txt")).digest("SHA-1").deleteOrphans();
+        sync.sync(source, destination);
+
+        File copy = new File(destination, "a.txt");
+        copy.setLastModified(copy.lastModified() - 60000);
+        Files.pour(new File(destination, "orphan.txt"), Arrays.asList("o"));
+        Files.pour(new File(destination, "kept.dat"), Arrays.asList("k"));
+        SyncReport report = sync.sync(source, destination);
+        assertTrue(report.getUpdated().isEmpty());
+        assertEquals(report.getUnchanged(), 1);
+        assertEquals(report.getDeleted(), Collections.singletonList("orphan.txt"));
+        assertEquals(copy.lastModified(), new File(source, "a.txt").lastModified());
+        assertFalse(new File(destination, "orphan.txt").exists());
+        assertTrue(new File(destination, "kept.dat").exists());
+
+        Files.unlink(new File("target/sync"));
+    }
+
+    /**
+     * Test that an orphan directory holding files that the find excludes is
+     * left in place with those files.
+     */
+    @Test
+    public void orphanExcluded() {
+        File source = new File("target/sync/source");
+        File destination = new File("target/sync/destination");
+        Files.unlink(new File("target/sync"));
+        source.mkdirs();
+        new File(destination, "orphan").mkdirs();
+        new File(destination, "empty").mkdirs();
+        Files.pour(new File(destination, "orphan/x.keep"), Arrays.asList("x"));
+        Files.pour(new File(destination, "orphan/y.txt"), Arrays.asList("y"));
+        Files.pour(new File(destination, "empty/z.txt"), Arrays.asList("z"));
+        SyncReport report = new Sync(new Find().exclude("**/*.keep")).deleteOrphans().sync(source, destination);
+        List<String> deleted = report.getDeleted();
+        assertEquals(deleted.size(), 3);
+        assertTrue(deleted.contains("orphan" + File.separator + "y.txt"));
+        assertTrue(deleted.contains("empty" + File.separator + "z.txt"));
+        assertTrue(deleted.indexOf("empty" + File.separator + "z.txt") < deleted.indexOf("empty"));
+        assertTrue(new File(destination, "orphan/x.keep").isFile());
+        assertFalse(new File(destination, "empty").exists());
+
+        Files.unlink(new File("target/sync"));
+    }
+
+    /**
+     * Test that a file that cannot be synchronized does not stop the sync and
+     * that the report of the changes made is thrown with the failure.
+     */
+    @Test
+    public void failures() {
+        File source = new File("target/sync/source");
+        File destination = new File("target/sync/destination");
+        Files.unlink(new File("target/sync"));
+        new File(source, "a").mkdirs();
+        destination.mkdirs();
+        Files.pour(new File(source, "a/b.txt"), Arrays.asList("b"));
+        Files.pour(new File(source, "c.txt"), Arrays.asList("c"));
+        Files.pour(new File(destination, "a"), Arrays.asList("a"));
+        try {
+            new Sync(new Find().include("**/*.txt")).sync(source, destination);
+        } catch (SyncException e) {
+            assertEquals(e.getCode(), ComfortIOException.SYNC_FAILURE);
+            assertEquals(e.getSuppressed().length, 1);
+            assertEquals(e.getReport().getAdded(), Collections.singletonList("c.txt"));
+            assertTrue(new File(destination, "a").isFile());
+            assertTrue(new File(destination, "c.txt").isFile());
+            return;
+        } finally {
+            Files.unlink(new File("target/sync"));
+        }
+        throw new AssertionError();
+    }
+
+    /**
+     * Test replacing destination entries whose type differs from the source
+     * entries.
+     */
+    @Test
+    public void typeChanged() {
+        File source = new File("target/sync/source");
+        File destination = new File("target/sync/destination");
+        Files.unlink(new File("target/sync"));
+        new File(source, "d").mkdirs();
+        new File(destination, "f").mkdirs();
+        new File(destination, "g").mkdirs();
+        Files.pour(new File(source, "d/x.txt"), Arrays.asList("x"));
+        Files.pour(new File(source, "f"), Arrays.asList("f"));
+        Files.pour(new File(source, "g"), Arrays.asList("g"));
+        Files.pour(new File(destination, "d"), Arrays.asList("d"));
+        Files.pour(new File(destination, "f/y.txt"), Arrays.asList("y"));
+        Files.pour(new File(destination, "g/z.keep"), Arrays.asList("z"));
+        try {
+            new Sync(new Find().exclude("**/*.keep")).deleteOrphans().sync(source, destination);
+        } catch (SyncException e) {
+            assertEquals(e.getSuppressed().length, 1);
+            List<String> updated = e.getReport().getUpdated();
+            assertEquals(updated.size(), 2);
+            assertTrue(updated.containsAll(Arrays.asList("d", "f")));
+            assertEquals(e.getReport().getAdded(), Collections.singletonList("d" + File.separator + "x.txt"));
+            assertEquals(e.getReport().getDeleted(), Collections.singletonList("f" + File.separator + "y.txt"));
+            assertEquals(Files.slurp(new File(destination, "d/x.txt")), Arrays.asList("x"));
+            assertEquals(Files.slurp(new File(destination, "f")), Arrays.asList("f"));
+            assertTrue(new File(destination, "g/z.keep").isFile());
+            return;
+        } finally {
+            Files.unlink(new File("target/sync"));
+        }
+        throw new AssertionError();
+    }
+
+    /** Test an unknown digest algorithm. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void badDigest() {
+        new Sync(new Find()).digest("NO-SUCH-DIGEST");
+    }
+
+    /** Test that the lists of a sync report cannot be modified. */
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void reportUnmodifiable() {
+        new SyncReport().getAdded().add("a.txt");
+    }
+}